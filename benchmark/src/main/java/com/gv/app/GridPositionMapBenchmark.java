@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-position cost of the header and footer wrapper adapter.
+ * <p>
+ * {@link HeaderFooterViewGridAdapter} hands each per-position method to the
+ * {@link GridPositionMap} method of the same name, which resolves it against
+ * the {@link GridPositionMap.Cells} the wrapper describes its items and
+ * fixed views with. The benchmarks call those same methods with cells
+ * backed by arrays, so they measure the wrapper's own code without a
+ * wrapped adapter. Positions are read from a shuffled table so that branch
+ * prediction does not favour one segment.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridPositionMapBenchmark {
+
+    private static final int POSITIONS = 1024;
+
+    /** Number of headers, and of footers */
+    @Param({"0", "1", "10", "100"})
+    public int fixedViewCount;
+
+    @Param({"1", "2", "3", "4", "12"})
+    public int numColumns;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int adapterCount;
+
+    private final GridPositionMap mMap = new GridPositionMap();
+    private final int[] mPositions = new int[POSITIONS];
+    private GridPositionMap.Cells mCells;
+
+    @Setup
+    public void setUp() {
+        mMap.rebuild(fixedViewCount, adapterCount, fixedViewCount, numColumns);
+        mCells = new ArrayCells(fixedViewCount);
+        final Random random = new Random(42);
+        final int count = mMap.getCount();
+        for (int i = 0; i < POSITIONS; i++) {
+            mPositions[i] = random.nextInt(count);
+        }
+    }
+
+    @Benchmark
+    public void rebuild() {
+        mMap.rebuild(fixedViewCount, adapterCount, fixedViewCount, numColumns);
+    }
+
+    @Benchmark
+    public int getCount() {
+        return mMap.getCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public void getItem(Blackhole blackhole) {
+        final GridPositionMap map = mMap;
+        final GridPositionMap.Cells cells = mCells;
+        for (int i = 0; i < POSITIONS; i++) {
+            blackhole.consume(map.getItem(mPositions[i], cells));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public void isEnabled(Blackhole blackhole) {
+        final GridPositionMap map = mMap;
+        final GridPositionMap.Cells cells = mCells;
+        for (int i = 0; i < POSITIONS; i++) {
+            blackhole.consume(map.isEnabled(mPositions[i], cells));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public void getItemViewType(Blackhole blackhole) {
+        final GridPositionMap map = mMap;
+        final GridPositionMap.Cells cells = mCells;
+        for (int i = 0; i < POSITIONS; i++) {
+            blackhole.consume(map.getItemViewType(mPositions[i], cells, -2));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public void getItemId(Blackhole blackhole) {
+        final GridPositionMap map = mMap;
+        final GridPositionMap.Cells cells = mCells;
+        for (int i = 0; i < POSITIONS; i++) {
+            blackhole.consume(map.getItemId(mPositions[i], cells));
+        }
+    }
+
+    /**
+     * Items that are their own position, and fixed views held in arrays
+     * like the wrapper holds its FixedViewInfos.
+     */
+    private static final class ArrayCells implements GridPositionMap.Cells {
+        private static final Object ITEM = new Object();
+
+        private final boolean[] mSelectable;
+        private final Object[] mData;
+        private final int[] mSerials;
+
+        ArrayCells(int fixedViewCount) {
+            // Headers first, then footers
+            mSelectable = new boolean[2 * fixedViewCount];
+            mData = new Object[2 * fixedViewCount];
+            mSerials = new int[2 * fixedViewCount];
+            for (int i = 0; i < mSerials.length; i++) {
+                mSelectable[i] = i % 2 == 0;
+                mData[i] = new Object();
+                mSerials[i] = i + 1;
+            }
+        }
+
+        private int getSlot(int segment, int index) {
+            return segment == GridPositionMap.SEGMENT_HEADER ? index : mSerials.length / 2 + index;
+        }
+
+        @Override
+        public boolean isItemEnabled(int adapterPosition) {
+            return true;
+        }
+
+        @Override
+        public Object getItem(int adapterPosition) {
+            return ITEM;
+        }
+
+        @Override
+        public long getItemId(int adapterPosition) {
+            return adapterPosition;
+        }
+
+        @Override
+        public int getItemViewType(int adapterPosition) {
+            return 0;
+        }
+
+        @Override
+        public int getPlaceholderViewType() {
+            return 1;
+        }
+
+        @Override
+        public boolean isFixedViewSelectable(int segment, int index) {
+            return mSelectable[getSlot(segment, index)];
+        }
+
+        @Override
+        public Object getFixedViewData(int segment, int index) {
+            return mData[getSlot(segment, index)];
+        }
+
+        @Override
+        public int getFixedViewSerial(int segment, int index) {
+            return mSerials[getSlot(segment, index)];
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import java.util.IdentityHashMap;
+import java.util.Locale;
+
+/**
+ * Scripts scrolls and data changes on a {@link HeaderGridView} or a
+ * {@link FooterGridView} and counts what they cost, so the numbers can be
+ * compared between builds on machines without a device.
+ * <p>
+ * The grid is not attached to a window: the harness measures and lays it
+ * out itself after every step, which is what a frame would do, and the
+ * wrapper adapters dispatch their changes right away.
+ * {@link GridScrollHarnessTest} runs it under Robolectric and prints the
+ * {@link Report} of each {@link Scenario}. Scrolling needs KitKat, so the
+ * runner must emulate API 19 or later.
+ */
+public class GridScrollHarness {
+
+    /**
+     * What to set up and what to do. The defaults make a three column grid
+     * of a thousand items under two headers, scrolled down by a third of its
+     * height a hundred times.
+     */
+    public static class Scenario {
+        final String name;
+        final boolean footerGrid;
+
+        public int headerCount = 2;
+        public int footerCount = 0;
+        /** Height of the header and footer views, in pixels */
+        public int fixedViewHeight = 300;
+        public int itemCount = 1000;
+        public int numColumns = 3;
+        /** Height of the item cells, in pixels */
+        public int cellHeight = 200;
+        public int width = 1080;
+        public int height = 1920;
+        public int scrollSteps = 100;
+        /** Scroll distance of a step, in pixels; negative scrolls up */
+        public int scrollDistance = 640;
+        /** Steps back by the same distance after the scroll steps; 0 for none */
+        public int scrollBackSteps = 0;
+        /** Every that many steps, the visible items change; 0 for never */
+        public int changeInterval = 0;
+        /** Every that many steps, items are inserted at the top; 0 for never */
+        public int insertInterval = 0;
+
+        /**
+         * @param name the name the report is printed with
+         * @param footerGrid whether to run on a {@link FooterGridView} rather
+         *        than a {@link HeaderGridView}
+         */
+        public Scenario(String name, boolean footerGrid) {
+            this.name = name;
+            this.footerGrid = footerGrid;
+        }
+    }
+
+    /**
+     * The counts of a scenario, from the first layout on.
+     */
+    public static class Report {
+        public final String name;
+        public int measurePasses;
+        public int layoutPasses;
+        public int getViewCalls;
+        public int convertViewReuses;
+        public int inflations;
+        public int placeholderCreations;
+        /** The largest first visible position any step reached */
+        public int furthestFirstVisiblePosition;
+        /** The first visible position after the last step */
+        public int lastFirstVisiblePosition;
+
+        Report(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the share of getView calls that were handed a view to reuse
+         */
+        public float getConvertViewReuseRate() {
+            return getViewCalls > 0 ? (float) convertViewReuses / getViewCalls : 0f;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%s: measure=%d layout=%d getView=%d reuse=%.1f%% inflate=%d placeholders=%d"
+                    + " first=%d..%d",
+                    name, measurePasses, layoutPasses, getViewCalls,
+                    100f * getConvertViewReuseRate(), inflations, placeholderCreations,
+                    furthestFirstVisiblePosition, lastFirstVisiblePosition);
+        }
+    }
+
+    private final Context mContext;
+
+    public GridScrollHarness(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Runs the scenario on a new grid.
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public Report run(Scenario scenario) {
+        final Report report = new Report(scenario.name);
+        final HeaderFooterGridView grid = scenario.footerGrid
+                ? new CountingFooterGridView(mContext, report)
+                : new CountingHeaderGridView(mContext, report);
+        grid.setNumColumns(scenario.numColumns);
+        grid.setOnHierarchyChangeListener(new PlaceholderCounter(report));
+        for (int i = 0; i < scenario.headerCount; i++) {
+            grid.addHeaderView(newFixedView(scenario, "header " + i));
+        }
+        for (int i = 0; i < scenario.footerCount; i++) {
+            grid.addFooterView(newFixedView(scenario, "footer " + i));
+        }
+        final SyntheticAdapter adapter = new SyntheticAdapter(scenario, report);
+        grid.setAdapter(adapter);
+
+        final int widthSpec = View.MeasureSpec.makeMeasureSpec(scenario.width,
+                View.MeasureSpec.EXACTLY);
+        final int heightSpec = View.MeasureSpec.makeMeasureSpec(scenario.height,
+                View.MeasureSpec.EXACTLY);
+        layout(grid, widthSpec, heightSpec, scenario);
+        final int steps = scenario.scrollSteps + scenario.scrollBackSteps;
+        for (int step = 1; step <= steps; step++) {
+            grid.scrollListBy(step <= scenario.scrollSteps
+                    ? scenario.scrollDistance : -scenario.scrollDistance);
+            if (scenario.changeInterval > 0 && step % scenario.changeInterval == 0) {
+                final int headerPositions = scenario.headerCount * scenario.numColumns;
+                final int first = Math.max(0, grid.getFirstVisiblePosition() - headerPositions);
+                adapter.notifyItemRangeChanged(first, Math.min(grid.getChildCount(),
+                        adapter.getCount() - first));
+            }
+            if (scenario.insertInterval > 0 && step % scenario.insertInterval == 0) {
+                adapter.insert(scenario.numColumns);
+            }
+            layout(grid, widthSpec, heightSpec, scenario);
+            report.furthestFirstVisiblePosition = Math.max(report.furthestFirstVisiblePosition,
+                    grid.getFirstVisiblePosition());
+        }
+        report.lastFirstVisiblePosition = grid.getFirstVisiblePosition();
+        return report;
+    }
+
+    private static void layout(View grid, int widthSpec, int heightSpec, Scenario scenario) {
+        if (grid.isLayoutRequested()) {
+            grid.measure(widthSpec, heightSpec);
+            grid.layout(0, 0, scenario.width, scenario.height);
+        }
+    }
+
+    private View newFixedView(Scenario scenario, String text) {
+        final TextView view = new TextView(mContext);
+        view.setText(text);
+        view.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                scenario.fixedViewHeight));
+        return view;
+    }
+
+    /**
+     * Counts the placeholders the wrapper adapters create. A new view is
+     * added to the grid, while a recycled one is only attached again.
+     */
+    private static class PlaceholderCounter implements ViewGroup.OnHierarchyChangeListener {
+        private final Report mReport;
+        private final IdentityHashMap<View, Boolean> mSeen = new IdentityHashMap<View, Boolean>();
+
+        PlaceholderCounter(Report report) {
+            mReport = report;
+        }
+
+        @Override
+        public void onChildViewAdded(View parent, View child) {
+            if (child instanceof PlaceholderView && mSeen.put(child, Boolean.TRUE) == null) {
+                mReport.placeholderCreations++;
+            }
+        }
+
+        @Override
+        public void onChildViewRemoved(View parent, View child) {
+        }
+    }
+
+    /**
+     * Items inflated from the sample cell layout, counting what the grid
+     * asks for.
+     */
+    private static class SyntheticAdapter extends BaseGridAdapter {
+        private final Scenario mScenario;
+        private final Report mReport;
+        private int mCount;
+
+        SyntheticAdapter(Scenario scenario, Report report) {
+            mScenario = scenario;
+            mReport = report;
+            mCount = scenario.itemCount;
+        }
+
+        void insert(int itemCount) {
+            mCount += itemCount;
+            notifyItemRangeInserted(0, itemCount);
+        }
+
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return position;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            mReport.getViewCalls++;
+            TextView cell = (TextView) convertView;
+            if (cell != null) {
+                mReport.convertViewReuses++;
+            } else {
+                mReport.inflations++;
+                cell = (TextView) LayoutInflater.from(parent.getContext())
+                        .inflate(R.layout.griditem, parent, false);
+                cell.getLayoutParams().height = mScenario.cellHeight;
+            }
+            cell.setText(String.valueOf(position));
+            return cell;
+        }
+    }
+
+    private static class CountingHeaderGridView extends HeaderGridView {
+        private final Report mReport;
+
+        CountingHeaderGridView(Context context, Report report) {
+            super(context);
+            mReport = report;
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            mReport.measurePasses++;
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int l, int t, int r, int b) {
+            mReport.layoutPasses++;
+            super.onLayout(changed, l, t, r, b);
+        }
+    }
+
+    private static class CountingFooterGridView extends FooterGridView {
+        private final Report mReport;
+
+        CountingFooterGridView(Context context, Report report) {
+            super(context);
+            mReport = report;
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            mReport.measurePasses++;
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int l, int t, int r, int b) {
+            mReport.layoutPasses++;
+            super.onLayout(changed, l, t, r, b);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import static org.junit.Assert.assertTrue;
+
+import android.os.Build;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * Runs a few {@link GridScrollHarness} scenarios and prints their reports,
+ * so CI logs the scroll costs of each build. The checks only make sure the
+ * scenarios scrolled, and that the back and forth one came back up; the
+ * numbers are for comparing builds.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.KITKAT)
+public class GridScrollHarnessTest {
+
+    @Test
+    public void printReports() {
+        final GridScrollHarness harness =
+                new GridScrollHarness(RuntimeEnvironment.getApplication());
+
+        final GridScrollHarness.Scenario headers =
+                new GridScrollHarness.Scenario("headers", false);
+
+        final GridScrollHarness.Scenario footers =
+                new GridScrollHarness.Scenario("footers", true);
+        footers.headerCount = 0;
+        footers.footerCount = 2;
+        footers.itemCount = 200;
+
+        final GridScrollHarness.Scenario changes =
+                new GridScrollHarness.Scenario("range changes", false);
+        changes.changeInterval = 5;
+
+        final GridScrollHarness.Scenario inserts =
+                new GridScrollHarness.Scenario("inserts", false);
+        inserts.insertInterval = 10;
+
+        final GridScrollHarness.Scenario backAndForth =
+                new GridScrollHarness.Scenario("back and forth", false);
+        backAndForth.scrollSteps = 50;
+        backAndForth.scrollBackSteps = 50;
+
+        for (GridScrollHarness.Scenario scenario : new GridScrollHarness.Scenario[] {
+                headers, footers, changes, inserts, backAndForth }) {
+            final GridScrollHarness.Report report = harness.run(scenario);
+            System.out.println(report);
+            assertTrue(scenario.name, report.getViewCalls > 0);
+            assertTrue(scenario.name, report.furthestFirstVisiblePosition > 0);
+            if (scenario == backAndForth) {
+                assertTrue(scenario.name, report.lastFirstVisiblePosition
+                        < report.furthestFirstVisiblePosition);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.database.DataSetObserver;
+import android.widget.BaseAdapter;
+
+/**
+ * A {@link BaseAdapter} that can tell a {@link HeaderFooterGridView} which
+ * items changed. The grid then rebinds only the visible cells in the range
+ * and keeps the others, instead of rebinding every visible cell as it does
+ * after {@link #notifyDataSetChanged()}.
+ */
+public abstract class BaseGridAdapter extends BaseAdapter {
+    private final GridDataSetObservable mDataSetObservable = new GridDataSetObservable();
+
+    @Override
+    public void registerDataSetObserver(DataSetObserver observer) {
+        mDataSetObservable.registerObserver(observer);
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+        mDataSetObservable.unregisterObserver(observer);
+    }
+
+    @Override
+    public void notifyDataSetChanged() {
+        mDataSetObservable.notifyChanged();
+    }
+
+    @Override
+    public void notifyDataSetInvalidated() {
+        mDataSetObservable.notifyInvalidated();
+    }
+
+    /**
+     * Notifies the attached observers that the item at the position changed.
+     */
+    public void notifyItemChanged(int position) {
+        mDataSetObservable.notifyItemRangeChanged(position, 1);
+    }
+
+    /**
+     * Notifies the attached observers that the contents of
+     * <code>itemCount</code> items starting at <code>positionStart</code>
+     * changed.
+     */
+    public void notifyItemRangeChanged(int positionStart, int itemCount) {
+        mDataSetObservable.notifyItemRangeChanged(positionStart, itemCount);
+    }
+
+    /**
+     * Notifies the attached observers that <code>itemCount</code> items were
+     * inserted at <code>positionStart</code>.
+     */
+    public void notifyItemRangeInserted(int positionStart, int itemCount) {
+        mDataSetObservable.notifyItemRangeInserted(positionStart, itemCount);
+    }
+
+    /**
+     * Notifies the attached observers that the <code>itemCount</code> items
+     * that were at <code>positionStart</code> were removed.
+     */
+    public void notifyItemRangeRemoved(int positionStart, int itemCount) {
+        mDataSetObservable.notifyItemRangeRemoved(positionStart, itemCount);
+    }
+}
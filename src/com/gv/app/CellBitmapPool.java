@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+
+import java.util.ArrayList;
+
+/**
+ * A pool of bitmaps the size of a cell of a {@link HeaderFooterGridView}, to
+ * draw cell images into instead of allocating new pixels for every cell that
+ * scrolls into view.
+ * <p>
+ * All the cells of a grid are as wide as a column, and as high as that width
+ * times the aspect ratio of the pool. The pool only keeps bitmaps of that
+ * size: when the number of columns changes, the bitmaps of the old size are
+ * dropped as they come back. It keeps at most a given number of bytes, and
+ * trims itself when the system is low on memory.
+ * <p>
+ * The pool can be used from any thread. See
+ * {@link GridImageLoader#setBitmapPool(CellBitmapPool)}
+ */
+public class CellBitmapPool {
+
+    private final HeaderFooterGridView mGrid;
+    private final Context mContext;
+    private final int mMaxBytes;
+    private final Bitmap.Config mConfig;
+    private volatile float mAspectRatio = 1f;
+
+    private final ArrayList<Bitmap> mBitmaps = new ArrayList<Bitmap>();
+    // The size of the pooled bitmaps
+    private int mWidth;
+    private int mHeight;
+    private int mBytes;
+    private boolean mClosed;
+    // A ComponentCallbacks2 from API 14 on. Declared as ComponentCallbacks,
+    // and created only there, so that the pool still loads before API 14.
+    private ComponentCallbacks mCallbacks;
+
+    /**
+     * Pools {@link Bitmap.Config#ARGB_8888} bitmaps.
+     *
+     * @param grid the grid whose cells set the size of the bitmaps
+     * @param maxBytes the most bytes of bitmaps to keep
+     */
+    public CellBitmapPool(HeaderFooterGridView grid, int maxBytes) {
+        this(grid, maxBytes, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * @param grid the grid whose cells set the size of the bitmaps
+     * @param maxBytes the most bytes of bitmaps to keep
+     * @param config the configuration of the bitmaps
+     */
+    public CellBitmapPool(HeaderFooterGridView grid, int maxBytes, Bitmap.Config config) {
+        mGrid = grid;
+        mContext = grid.getContext().getApplicationContext();
+        mMaxBytes = maxBytes;
+        mConfig = config;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            registerComponentCallbacks();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private void registerComponentCallbacks() {
+        mCallbacks = new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+
+            @Override
+            public void onLowMemory() {
+                clear();
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+        };
+        mContext.registerComponentCallbacks(mCallbacks);
+    }
+
+    /**
+     * Sets the height of the cells relative to their width. The default is
+     * 1, square cells.
+     */
+    public void setCellAspectRatio(float heightOverWidth) {
+        mAspectRatio = heightOverWidth;
+    }
+
+    public int getCellWidth() {
+        return mGrid.getExpectedColumnWidth();
+    }
+
+    public int getCellHeight() {
+        return Math.round(getCellWidth() * mAspectRatio);
+    }
+
+    /**
+     * @return a transparent bitmap of the size of a cell, from the pool if it
+     *         has one
+     */
+    public Bitmap obtain() {
+        final int width = Math.max(getCellWidth(), 1);
+        final int height = Math.max(getCellHeight(), 1);
+        synchronized (this) {
+            if (width != mWidth || height != mHeight) {
+                clear();
+                mWidth = width;
+                mHeight = height;
+            }
+            final int count = mBitmaps.size();
+            if (count > 0) {
+                final Bitmap bitmap = mBitmaps.remove(count - 1);
+                mBytes -= getBytes(bitmap);
+                bitmap.eraseColor(Color.TRANSPARENT);
+                return bitmap;
+            }
+        }
+        return Bitmap.createBitmap(width, height, mConfig);
+    }
+
+    /**
+     * Gives back a bitmap from {@link #obtain()} that nothing shows anymore.
+     * It is recycled if it is no longer the size of a cell or the pool is
+     * full.
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap.isRecycled()) {
+            return;
+        }
+        final int bytes = getBytes(bitmap);
+        if (mClosed || bitmap.getWidth() != mWidth || bitmap.getHeight() != mHeight
+                || bitmap.getConfig() != mConfig || mBytes + bytes > mMaxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        mBitmaps.add(bitmap);
+        mBytes += bytes;
+    }
+
+    /**
+     * Recycles pooled bitmaps until the pool holds at most the given number
+     * of bytes.
+     */
+    public synchronized void trimToSize(int maxBytes) {
+        while (mBytes > maxBytes && !mBitmaps.isEmpty()) {
+            final Bitmap bitmap = mBitmaps.remove(mBitmaps.size() - 1);
+            mBytes -= getBytes(bitmap);
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Recycles all the pooled bitmaps.
+     */
+    public void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * Empties the pool and stops following the memory pressure. The pool can
+     * still be used, it just does not keep anything.
+     */
+    public void close() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            unregisterComponentCallbacks();
+        }
+        synchronized (this) {
+            mClosed = true;
+            clear();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private void unregisterComponentCallbacks() {
+        if (mCallbacks != null) {
+            mContext.unregisterComponentCallbacks(mCallbacks);
+            mCallbacks = null;
+        }
+    }
+
+    private static int getBytes(Bitmap bitmap) {
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    private void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            trimToSize(mMaxBytes / 2);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Process;
+import android.util.DisplayMetrics;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+
+/**
+ * Inflates the cells of a {@link HeaderFooterGridView} ahead of time, so the
+ * first layout of the grid binds cells instead of inflating them.
+ * <p>
+ * Each view type gets the layout to inflate for it with
+ * {@link #addCellLayout(int, int, boolean)}. The pool inflates enough of them
+ * to fill the grid once: the number of columns times the number of rows that
+ * fit its height. Until the grid is measured, the screen size and the
+ * requested number of columns stand in. Layouts whose views can be created
+ * off the UI thread are inflated on a background thread; the others one at
+ * a time while the UI thread is idle.
+ * <p>
+ * An adapter gets its new cells from {@link #obtain(int, ViewGroup)}, which
+ * inflates one on the spot once the pool runs out. The pool only fills
+ * once per layout: after the first screen, recycled cells take over.
+ * See {@link HeaderFooterGridView#getCellInflationPool()}
+ */
+public class CellInflationPool {
+    private static final String TAG = "CellInflationPool";
+
+    private static final class CellLayout {
+        final int layoutResId;
+        final boolean inflateInBackground;
+        final ArrayList<View> views = new ArrayList<View>();
+        /** The number of views inflated or being inflated */
+        int requested;
+        /** The number of views waiting for the UI thread to be idle */
+        int pendingIdle;
+        /** The height the cells ask for, or 0 until known or if not fixed */
+        int cellHeight;
+        volatile boolean cancelled;
+
+        CellLayout(int layoutResId, boolean inflateInBackground) {
+            this.layoutResId = layoutResId;
+            this.inflateInBackground = inflateInBackground;
+        }
+    }
+
+    private final HeaderFooterGridView mGrid;
+    private final LayoutInflater mInflater;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final SparseArray<CellLayout> mLayouts = new SparseArray<CellLayout>();
+    private boolean mIdleScheduled;
+
+    private final MessageQueue.IdleHandler mIdleInflater = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            for (int i = 0; i < mLayouts.size(); i++) {
+                final CellLayout layout = mLayouts.valueAt(i);
+                if (layout.pendingIdle > 0) {
+                    layout.pendingIdle--;
+                    onInflated(layout, mInflater.inflate(layout.layoutResId, mGrid, false));
+                    // One view per idle callback
+                    return mIdleScheduled = hasPendingIdle();
+                }
+            }
+            return mIdleScheduled = false;
+        }
+    };
+
+    CellInflationPool(HeaderFooterGridView grid) {
+        mGrid = grid;
+        mInflater = LayoutInflater.from(grid.getContext());
+    }
+
+    /**
+     * Sets the layout the cells of a view type are inflated from, and starts
+     * inflating them.
+     *
+     * @param viewType the view type, as returned by the adapter's
+     *        {@link android.widget.Adapter#getItemViewType(int)}
+     * @param layoutResId the layout resource of the cells
+     * @param inflateInBackground whether the views of the layout may be
+     *        created on another thread, which is not the case if any of them
+     *        touches the UI thread, e.g. through a {@link Handler}, while
+     *        being constructed
+     */
+    public void addCellLayout(int viewType, int layoutResId, boolean inflateInBackground) {
+        final CellLayout old = mLayouts.get(viewType);
+        if (old != null) {
+            old.cancelled = true;
+        }
+        mLayouts.put(viewType, new CellLayout(layoutResId, inflateInBackground));
+        fill();
+    }
+
+    /**
+     * @return a cell of the view type from the pool, or one inflated now if
+     *         the pool has none left
+     * @throws IllegalArgumentException if no layout was added for the view
+     *         type
+     */
+    public View obtain(int viewType, ViewGroup parent) {
+        final CellLayout layout = mLayouts.get(viewType);
+        if (layout == null) {
+            throw new IllegalArgumentException("No cell layout for view type " + viewType);
+        }
+        if (!layout.views.isEmpty()) {
+            return layout.views.remove(layout.views.size() - 1);
+        }
+        return mInflater.inflate(layout.layoutResId, parent, false);
+    }
+
+    /**
+     * Drops the pooled cells and stops inflating more.
+     */
+    public void clear() {
+        for (int i = 0; i < mLayouts.size(); i++) {
+            mLayouts.valueAt(i).cancelled = true;
+        }
+        mLayouts.clear();
+        if (mIdleScheduled) {
+            mIdleScheduled = false;
+            Looper.myQueue().removeIdleHandler(mIdleInflater);
+        }
+    }
+
+    /**
+     * Called by the grid after it measured, when the number of columns and
+     * its height are known.
+     */
+    void onGridMeasured() {
+        fill();
+    }
+
+    private void fill() {
+        for (int i = 0; i < mLayouts.size(); i++) {
+            final CellLayout layout = mLayouts.valueAt(i);
+            final int missing = getTargetCount(layout) - layout.requested;
+            if (missing <= 0) {
+                continue;
+            }
+            layout.requested += missing;
+            if (layout.inflateInBackground) {
+                inflateInBackground(layout, missing);
+            } else {
+                layout.pendingIdle += missing;
+                if (!mIdleScheduled) {
+                    mIdleScheduled = true;
+                    Looper.myQueue().addIdleHandler(mIdleInflater);
+                }
+            }
+        }
+    }
+
+    private int getTargetCount(CellLayout layout) {
+        final int numColumns = mGrid.getExpectedNumColumns();
+        final DisplayMetrics metrics = mGrid.getResources().getDisplayMetrics();
+        final int width = mGrid.getMeasuredWidth() > 0
+                ? mGrid.getMeasuredWidth() : metrics.widthPixels;
+        final int height = mGrid.getMeasuredHeight() > 0
+                ? mGrid.getMeasuredHeight() : metrics.heightPixels;
+        // Cells of unknown height are taken to be square
+        final int rowHeight = Math.max(layout.cellHeight > 0
+                ? layout.cellHeight : width / numColumns, 1);
+        return numColumns * ((height + rowHeight - 1) / rowHeight);
+    }
+
+    private void inflateInBackground(final CellLayout layout, final int count) {
+        // A looper of its own, for the views that create a Handler
+        final HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        // LayoutInflater is not thread safe, this one is only used over there
+        final LayoutInflater inflater = mInflater.cloneInContext(mGrid.getContext());
+        new Handler(thread.getLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count && !layout.cancelled; i++) {
+                    final View view = inflater.inflate(layout.layoutResId, mGrid, false);
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onInflated(layout, view);
+                        }
+                    });
+                }
+                thread.quit();
+            }
+        });
+    }
+
+    private void onInflated(CellLayout layout, View view) {
+        if (layout.cancelled) {
+            return;
+        }
+        layout.views.add(view);
+        final ViewGroup.LayoutParams lp = view.getLayoutParams();
+        if (layout.cellHeight == 0 && lp != null && lp.height > 0) {
+            // Now the number of rows is known for sure
+            layout.cellHeight = lp.height;
+            fill();
+        }
+    }
+
+    private boolean hasPendingIdle() {
+        for (int i = 0; i < mLayouts.size(); i++) {
+            if (mLayouts.valueAt(i).pendingIdle > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
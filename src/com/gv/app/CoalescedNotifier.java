@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.support.v4.view.ViewCompat;
+
+/**
+ * Folds the change notifications a wrapper adapter raises on its own (fixed
+ * views added or removed, number of columns changed) into at most one
+ * dispatch per frame.
+ * <p>
+ * The dispatch is posted to the animation step of the next frame, which runs
+ * before that frame's layout. It is held back while the grid is inside a
+ * batch update and sent once the batch is committed. A grid that is not
+ * attached to a window has no frames, so it gets the dispatch right away.
+ */
+final class CoalescedNotifier implements Runnable {
+
+    private final HeaderFooterGridView mGrid;
+    private final Runnable mDispatch;
+    private boolean mPending;
+    private boolean mPosted;
+
+    /**
+     * @param grid the grid whose frames and batch updates to follow, or null
+     *        to dispatch right away
+     * @param dispatch rebuilds the wrapper state and notifies its observers
+     */
+    CoalescedNotifier(HeaderFooterGridView grid, Runnable dispatch) {
+        mGrid = grid;
+        mDispatch = dispatch;
+    }
+
+    /**
+     * Asks for a dispatch, sent at the latest on the next frame.
+     */
+    void request() {
+        mPending = true;
+        if (mGrid == null || mGrid.getWindowToken() == null) {
+            run();
+        } else if (!mGrid.isInBatchUpdate() && !mPosted) {
+            mPosted = true;
+            ViewCompat.postOnAnimation(mGrid, this);
+        }
+    }
+
+    /**
+     * Drops a requested dispatch, for when the wrapper state has just been
+     * rebuilt and dispatched for another reason.
+     *
+     * @return whether a dispatch was requested
+     */
+    boolean cancel() {
+        final boolean pending = mPending;
+        mPending = false;
+        return pending;
+    }
+
+    /**
+     * Sends a requested dispatch now instead of waiting for the frame.
+     */
+    void flush() {
+        if (mPending) {
+            run();
+        }
+    }
+
+    /**
+     * Called when the grid commits its outermost batch update.
+     */
+    void onBatchCommitted() {
+        if (mPending) {
+            request();
+        }
+    }
+
+    @Override
+    public void run() {
+        mPosted = false;
+        if (mPending && (mGrid == null || !mGrid.isInBatchUpdate())) {
+            mPending = false;
+            mDispatch.run();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+/**
+ * Implemented by adapters of a {@link HeaderFooterGridView} whose items may
+ * span several columns. An item that does not fit in what is left of its
+ * row starts the next row, and the rest of the row stays empty.
+ * <p>
+ * The grid asks for the spans lazily and keeps them until the adapter
+ * notifies a change; with a {@link BaseGridAdapter}, only the spans from the
+ * first changed item on are asked for again. The positions are the
+ * adapter's own.
+ * <p>
+ * The spanning items are laid out by a wrapper of their own, so such an
+ * adapter is not bound fast as a {@link DeferredBindAdapter} and not told
+ * about visible ranges as a {@link GridVisibleRangeListener}.
+ */
+public interface ColumnSpanAdapter {
+
+    /**
+     * @return the number of columns the item at the position spans, 1 or
+     *         more; spans wider than the grid are cut to its width
+     */
+    int getColumnSpan(int position);
+}
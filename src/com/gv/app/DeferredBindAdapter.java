@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Implemented by adapters of a {@link HeaderFooterGridView} whose cells are
+ * expensive to bind. While the grid flings faster than its fast bind
+ * velocity, it gets its item cells from
+ * {@link #getFastView(int, View, ViewGroup)} instead of
+ * {@link android.widget.Adapter#getView(int, View, ViewGroup)}. Once the
+ * scroll slows down, the cells still visible are completed with
+ * {@link #bindFull(int, View)}.
+ * <p>
+ * Header and footer rows are never bound fast. The positions are the
+ * adapter's own.
+ * See {@link HeaderFooterGridView#setFastBindVelocity(int)}
+ */
+public interface DeferredBindAdapter {
+
+    /**
+     * Gets a cell bound with just what can be seen in a few milliseconds,
+     * e.g. without images. It must have the size the fully bound cell has.
+     */
+    View getFastView(int position, View convertView, ViewGroup parent);
+
+    /**
+     * Completes the binding of a cell from
+     * {@link #getFastView(int, View, ViewGroup)} that is still visible.
+     */
+    void bindFull(int position, View view);
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.database.DataSetObservable;
+import android.database.DataSetObserver;
+
+/**
+ * A {@link DataSetObservable} that can also report ranges of changed,
+ * inserted or removed items. {@link GridDataSetObserver}s get the range,
+ * plain observers get {@link DataSetObserver#onChanged()}.
+ */
+public class GridDataSetObservable extends DataSetObservable {
+
+    private static final int CHANGED = 0;
+    private static final int INSERTED = 1;
+    private static final int REMOVED = 2;
+
+    public void notifyItemRangeChanged(int positionStart, int itemCount) {
+        notifyItemRange(CHANGED, positionStart, itemCount);
+    }
+
+    public void notifyItemRangeInserted(int positionStart, int itemCount) {
+        notifyItemRange(INSERTED, positionStart, itemCount);
+    }
+
+    public void notifyItemRangeRemoved(int positionStart, int itemCount) {
+        notifyItemRange(REMOVED, positionStart, itemCount);
+    }
+
+    private void notifyItemRange(int action, int positionStart, int itemCount) {
+        if (itemCount <= 0) {
+            return;
+        }
+        synchronized (mObservers) {
+            // since onChanged() is implemented by the app, it could do anything, including
+            // removing itself from {@link mObservers} - and that could cause problems if
+            // an iterator is used on the ArrayList {@link mObservers}.
+            // to avoid such problems, just march thru the list in the reverse order.
+            for (int i = mObservers.size() - 1; i >= 0; i--) {
+                final DataSetObserver observer = mObservers.get(i);
+                if (!(observer instanceof GridDataSetObserver)) {
+                    observer.onChanged();
+                    continue;
+                }
+                final GridDataSetObserver gridObserver = (GridDataSetObserver) observer;
+                switch (action) {
+                    case CHANGED:
+                        gridObserver.onItemRangeChanged(positionStart, itemCount);
+                        break;
+                    case INSERTED:
+                        gridObserver.onItemRangeInserted(positionStart, itemCount);
+                        break;
+                    default:
+                        gridObserver.onItemRangeRemoved(positionStart, itemCount);
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.database.DataSetObserver;
+
+/**
+ * A {@link DataSetObserver} that is also told which items changed, so it can
+ * update just those instead of the whole data set. The default
+ * implementations fall back to {@link #onChanged()}.
+ * See {@link GridDataSetObservable}
+ */
+public abstract class GridDataSetObserver extends DataSetObserver {
+
+    /**
+     * Called when the contents of <code>itemCount</code> items starting at
+     * <code>positionStart</code> changed. The number of items did not change.
+     */
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        onChanged();
+    }
+
+    /**
+     * Called when <code>itemCount</code> items were inserted, the first of
+     * them now being at <code>positionStart</code>.
+     */
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        onChanged();
+    }
+
+    /**
+     * Called when the <code>itemCount</code> items that were at
+     * <code>positionStart</code> and after were removed.
+     */
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        onChanged();
+    }
+}
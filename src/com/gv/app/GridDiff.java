@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Computes the updates that turn one list into another with Eugene Myers'
+ * difference algorithm, in its linear space variant.
+ * <p>
+ * Items are matched by {@link ListGridAdapter.ItemCallback#areItemsTheSame},
+ * and matched items whose contents differ are reported as changed. Items
+ * that moved are reported as removed and inserted again. The updates are
+ * ordered from the end of the list to its start, so each of them applies to
+ * positions the ones before it left untouched.
+ * <p>
+ * The updates are kept as triples of ints, so a diff of tens of thousands of
+ * items does not allocate an object per update.
+ */
+final class GridDiff {
+
+    static final int UPDATE_CHANGED = 0;
+    static final int UPDATE_INSERTED = 1;
+    static final int UPDATE_REMOVED = 2;
+
+    // Triples of update type, position and item count
+    private int[] mUpdates = new int[3 * 16];
+    private int mSize;
+
+    private GridDiff() {
+    }
+
+    /**
+     * @return the number of updates
+     */
+    int getUpdateCount() {
+        return mSize / 3;
+    }
+
+    int getUpdateType(int index) {
+        return mUpdates[3 * index];
+    }
+
+    int getUpdatePosition(int index) {
+        return mUpdates[3 * index + 1];
+    }
+
+    int getUpdateItemCount(int index) {
+        return mUpdates[3 * index + 2];
+    }
+
+    private void add(int type, int position, int itemCount) {
+        if (itemCount == 0) {
+            return;
+        }
+        // Ranges are reported backwards, so a range continues the last one from before
+        if (mSize > 0 && mUpdates[mSize - 3] == type) {
+            final int lastPosition = mUpdates[mSize - 2];
+            if (type != UPDATE_INSERTED && position + itemCount == lastPosition) {
+                mUpdates[mSize - 2] = position;
+                mUpdates[mSize - 1] += itemCount;
+                return;
+            }
+            if (type == UPDATE_INSERTED && position == lastPosition) {
+                mUpdates[mSize - 1] += itemCount;
+                return;
+            }
+        }
+        if (mSize + 3 > mUpdates.length) {
+            mUpdates = Arrays.copyOf(mUpdates, mUpdates.length * 2);
+        }
+        mUpdates[mSize++] = type;
+        mUpdates[mSize++] = position;
+        mUpdates[mSize++] = itemCount;
+    }
+
+    /**
+     * Computes the updates from the old list to the new one. Meant to be
+     * called off the UI thread.
+     */
+    static <T> GridDiff compute(List<T> oldList, List<T> newList,
+            ListGridAdapter.ItemCallback<T> callback) {
+        final int oldSize = oldList.size();
+        final int newSize = newList.size();
+
+        // The runs of matching items, as triples of old start, new start and length
+        final ArrayList<int[]> diagonals = new ArrayList<int[]>();
+        final ArrayList<int[]> ranges = new ArrayList<int[]>();
+        ranges.add(new int[] {0, oldSize, 0, newSize});
+        final int max = (oldSize + newSize + 1) / 2;
+        final int[] forward = new int[max * 2 + 1];
+        final int[] backward = new int[max * 2 + 1];
+        final Snake snake = new Snake();
+        while (!ranges.isEmpty()) {
+            final int[] range = ranges.remove(ranges.size() - 1);
+            if (!midPoint(range, oldList, newList, callback, forward, backward, max, snake)) {
+                continue;
+            }
+            final int diagonalSize = Math.min(snake.endX - snake.startX,
+                    snake.endY - snake.startY);
+            if (diagonalSize > 0) {
+                diagonals.add(snake.toDiagonal(diagonalSize));
+            }
+            ranges.add(new int[] {range[0], snake.startX, range[2], snake.startY});
+            ranges.add(new int[] {snake.endX, range[1], snake.endY, range[3]});
+        }
+        sortDiagonals(diagonals);
+
+        final GridDiff diff = new GridDiff();
+        int x = oldSize;
+        int y = newSize;
+        for (int i = diagonals.size() - 1; i >= -1; i--) {
+            final int[] diagonal = i >= 0 ? diagonals.get(i) : new int[] {0, 0, 0};
+            final int endX = diagonal[0] + diagonal[2];
+            final int endY = diagonal[1] + diagonal[2];
+            // The items between this run of matches and the next one
+            diff.add(UPDATE_REMOVED, endX, x - endX);
+            diff.add(UPDATE_INSERTED, endX, y - endY);
+            for (int k = diagonal[2] - 1; k >= 0; k--) {
+                if (!callback.areContentsTheSame(oldList.get(diagonal[0] + k),
+                        newList.get(diagonal[1] + k))) {
+                    diff.add(UPDATE_CHANGED, diagonal[0] + k, 1);
+                }
+            }
+            x = diagonal[0];
+            y = diagonal[1];
+        }
+        return diff;
+    }
+
+    private static void sortDiagonals(ArrayList<int[]> diagonals) {
+        final int[][] sorted = diagonals.toArray(new int[diagonals.size()][]);
+        Arrays.sort(sorted, new java.util.Comparator<int[]>() {
+            @Override
+            public int compare(int[] lhs, int[] rhs) {
+                return lhs[0] < rhs[0] ? -1 : (lhs[0] == rhs[0] ? 0 : 1);
+            }
+        });
+        diagonals.clear();
+        diagonals.addAll(Arrays.asList(sorted));
+    }
+
+    /**
+     * The middle snake of a range: the moves around its middle that both
+     * the forward and the backward searches reach.
+     */
+    private static final class Snake {
+        int startX;
+        int startY;
+        int endX;
+        int endY;
+        boolean reverse;
+
+        int[] toDiagonal(int diagonalSize) {
+            final int width = endX - startX;
+            final int height = endY - startY;
+            if (width == height) {
+                return new int[] {startX, startY, width};
+            }
+            if (reverse) {
+                return new int[] {startX, startY, diagonalSize};
+            }
+            // The forward search makes its move before the matches
+            return height > width
+                    ? new int[] {startX, startY + 1, diagonalSize}
+                    : new int[] {startX + 1, startY, diagonalSize};
+        }
+    }
+
+    private static <T> boolean midPoint(int[] range, List<T> oldList, List<T> newList,
+            ListGridAdapter.ItemCallback<T> callback, int[] forward, int[] backward,
+            int center, Snake snake) {
+        final int oldRangeSize = range[1] - range[0];
+        final int newRangeSize = range[3] - range[2];
+        if (oldRangeSize < 1 || newRangeSize < 1) {
+            return false;
+        }
+        final int max = (oldRangeSize + newRangeSize + 1) / 2;
+        forward[center + 1] = range[0];
+        backward[center + 1] = range[1];
+        for (int d = 0; d < max; d++) {
+            if (forward(range, oldList, newList, callback, forward, backward, center, d, snake)
+                    || backward(range, oldList, newList, callback, forward, backward, center,
+                            d, snake)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <T> boolean forward(int[] range, List<T> oldList, List<T> newList,
+            ListGridAdapter.ItemCallback<T> callback, int[] forward, int[] backward,
+            int center, int d, Snake snake) {
+        final int delta = (range[1] - range[0]) - (range[3] - range[2]);
+        final boolean checkForSnake = Math.abs(delta) % 2 == 1;
+        for (int k = -d; k <= d; k += 2) {
+            final int startX;
+            int x;
+            if (k == -d || (k != d && forward[center + k + 1] > forward[center + k - 1])) {
+                // Moving down, an insertion
+                x = startX = forward[center + k + 1];
+            } else {
+                // Moving right, a removal
+                startX = forward[center + k - 1];
+                x = startX + 1;
+            }
+            int y = range[2] + (x - range[0]) - k;
+            final int startY = (d == 0 || x != startX) ? y : y - 1;
+            while (x < range[1] && y < range[3]
+                    && callback.areItemsTheSame(oldList.get(x), newList.get(y))) {
+                x++;
+                y++;
+            }
+            forward[center + k] = x;
+            if (checkForSnake) {
+                final int backwardK = delta - k;
+                if (backwardK >= -d + 1 && backwardK <= d - 1
+                        && backward[center + backwardK] <= x) {
+                    snake.startX = startX;
+                    snake.startY = startY;
+                    snake.endX = x;
+                    snake.endY = y;
+                    snake.reverse = false;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static <T> boolean backward(int[] range, List<T> oldList, List<T> newList,
+            ListGridAdapter.ItemCallback<T> callback, int[] forward, int[] backward,
+            int center, int d, Snake snake) {
+        final int delta = (range[1] - range[0]) - (range[3] - range[2]);
+        final boolean checkForSnake = delta % 2 == 0;
+        for (int k = -d; k <= d; k += 2) {
+            final int startX;
+            int x;
+            if (k == -d || (k != d && backward[center + k + 1] < backward[center + k - 1])) {
+                x = startX = backward[center + k + 1];
+            } else {
+                startX = backward[center + k - 1];
+                x = startX - 1;
+            }
+            int y = range[3] - ((range[1] - x) - k);
+            final int startY = (d == 0 || x != startX) ? y : y + 1;
+            while (x > range[0] && y > range[2]
+                    && callback.areItemsTheSame(oldList.get(x - 1), newList.get(y - 1))) {
+                x--;
+                y--;
+            }
+            backward[center + k] = x;
+            if (checkForSnake) {
+                final int forwardK = delta - k;
+                if (forwardK >= -d && forwardK <= d && forward[center + forwardK] >= x) {
+                    snake.startX = x;
+                    snake.startY = y;
+                    snake.endX = startX;
+                    snake.endY = startY;
+                    snake.reverse = true;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,563 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the images of the cells of a {@link HeaderFooterGridView} into their
+ * {@link ImageView}s.
+ * <p>
+ * Images are decoded on a fixed number of background threads, downsampled
+ * to about the width of a column of the grid, and kept in a memory cache of
+ * a given size in bytes. Images from http and https are also kept in a disk
+ * cache; the others are read through the {@link android.content.ContentResolver}.
+ * <p>
+ * Binding an ImageView that is still waiting for an image cancels that
+ * request, so a recycled cell never shows the image of the position it was
+ * bound to before.
+ * <p>
+ * With a {@link CellBitmapPool}, images are cropped to the size of a cell
+ * and drawn into bitmaps from the pool. The loader counts the views and the
+ * memory cache entry that show each of them, and gives a bitmap back to the
+ * pool when none does anymore. Cells moved to the scrap heap let go of their
+ * images right away. An ImageView bound through the loader must then only be
+ * changed through it, or be cleared with {@link #cancel(ImageView)} first.
+ */
+public class GridImageLoader {
+    private static final String TAG = "GridImageLoader";
+
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 20000;
+    private static final String PARTIAL_SUFFIX = ".tmp";
+
+    private final HeaderFooterGridView mGrid;
+    private final Context mContext;
+    private final LruCache<String, Bitmap> mMemoryCache;
+    private final File mDiskCacheDir;
+    private final long mDiskCacheBytes;
+    private final ExecutorService mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private CellBitmapPool mBitmapPool;
+    // How many views and cache entries show each bitmap from the pool
+    private final IdentityHashMap<Bitmap, Integer> mBitmapRefs =
+            new IdentityHashMap<Bitmap, Integer>();
+    // The bitmap of the last decode of each thread, decoded into again on KitKat and up
+    private final ThreadLocal<Bitmap> mDecodeBitmap = new ThreadLocal<Bitmap>();
+
+    private final AbsListView.RecyclerListener mRecyclerListener =
+            new AbsListView.RecyclerListener() {
+        @Override
+        public void onMovedToScrapHeap(View view) {
+            releaseImages(view);
+        }
+    };
+
+    /**
+     * Decodes on two background threads.
+     *
+     * @param grid the grid whose columns set the size of the images
+     * @param memoryCacheBytes the most bytes of decoded images to keep
+     * @param diskCacheDir the directory of the disk cache
+     * @param diskCacheBytes the most bytes to keep in the disk cache
+     */
+    public GridImageLoader(HeaderFooterGridView grid, int memoryCacheBytes,
+            File diskCacheDir, long diskCacheBytes) {
+        this(grid, memoryCacheBytes, diskCacheDir, diskCacheBytes, 2);
+    }
+
+    /**
+     * @param grid the grid whose columns set the size of the images
+     * @param memoryCacheBytes the most bytes of decoded images to keep
+     * @param diskCacheDir the directory of the disk cache
+     * @param diskCacheBytes the most bytes to keep in the disk cache
+     * @param threadCount the number of threads to load images on
+     */
+    public GridImageLoader(HeaderFooterGridView grid, int memoryCacheBytes,
+            File diskCacheDir, long diskCacheBytes, int threadCount) {
+        mGrid = grid;
+        mContext = grid.getContext().getApplicationContext();
+        mMemoryCache = new LruCache<String, Bitmap>(memoryCacheBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getRowBytes() * value.getHeight();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue,
+                    Bitmap newValue) {
+                releaseBitmap(oldValue);
+            }
+        };
+        mDiskCacheDir = diskCacheDir;
+        mDiskCacheBytes = diskCacheBytes;
+        mExecutor = Executors.newFixedThreadPool(threadCount);
+    }
+
+    /**
+     * Shows the image at a URI in an ImageView. The view is cleared until the
+     * image is loaded, unless it is in the memory cache.
+     *
+     * @param view the view of a cell
+     * @param uri the image, an http, https, file, content or
+     *        android.resource URI, or null to clear the view
+     */
+    public void bind(ImageView view, String uri) {
+        final int targetWidth = mGrid.getExpectedColumnWidth();
+        final int targetHeight = mBitmapPool != null ? mBitmapPool.getCellHeight() : 0;
+        final String key = uri + '@' + targetWidth + 'x' + targetHeight;
+        final Request pending = (Request) view.getTag(R.id.grid_image_request);
+        if (pending != null) {
+            if (pending.key.equals(key)) {
+                return;
+            }
+            pending.cancel();
+        }
+        view.setTag(R.id.grid_image_request, null);
+
+        final Bitmap cached = uri != null ? mMemoryCache.get(key) : null;
+        setImage(view, cached);
+        if (cached != null || uri == null) {
+            return;
+        }
+        final Request request = new Request(view, uri, key, targetWidth, targetHeight);
+        view.setTag(R.id.grid_image_request, request);
+        request.future = mExecutor.submit(request);
+    }
+
+    /**
+     * Cancels the request of an ImageView, if it is still waiting for its
+     * image.
+     */
+    public void cancel(ImageView view) {
+        final Request pending = (Request) view.getTag(R.id.grid_image_request);
+        if (pending != null) {
+            pending.cancel();
+            view.setTag(R.id.grid_image_request, null);
+        }
+        setImage(view, null);
+    }
+
+    /**
+     * Sets the pool to draw the images into, or null to decode each of them
+     * into a bitmap of its own. Cells bound before keep their images.
+     */
+    public void setBitmapPool(CellBitmapPool pool) {
+        if (mBitmapPool == null && pool != null) {
+            mGrid.addCellRecyclerListener(mRecyclerListener);
+        } else if (mBitmapPool != null && pool == null) {
+            mGrid.removeCellRecyclerListener(mRecyclerListener);
+        }
+        clearMemoryCache();
+        mBitmapPool = pool;
+    }
+
+    public CellBitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
+    /**
+     * Drops the images kept in memory.
+     */
+    public void clearMemoryCache() {
+        mMemoryCache.evictAll();
+    }
+
+    /**
+     * Stops the loader threads. The loader cannot be used afterwards.
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+        if (mBitmapPool != null) {
+            mGrid.removeCellRecyclerListener(mRecyclerListener);
+        }
+    }
+
+    private void releaseImages(View view) {
+        if (view instanceof ImageView) {
+            if (view.getTag(R.id.grid_image_bitmap) != null
+                    || view.getTag(R.id.grid_image_request) != null) {
+                cancel((ImageView) view);
+            }
+        } else if (view instanceof ViewGroup) {
+            final ViewGroup group = (ViewGroup) view;
+            for (int i = group.getChildCount() - 1; i >= 0; i--) {
+                releaseImages(group.getChildAt(i));
+            }
+        }
+    }
+
+    private void setImage(ImageView view, Bitmap bitmap) {
+        final Bitmap old = (Bitmap) view.getTag(R.id.grid_image_bitmap);
+        view.setImageBitmap(bitmap);
+        view.setTag(R.id.grid_image_bitmap, bitmap);
+        // In this order, so a bitmap bound again is not freed in between
+        acquireBitmap(bitmap);
+        releaseBitmap(old);
+    }
+
+    private void acquireBitmap(Bitmap bitmap) {
+        if (bitmap != null && mBitmapPool != null) {
+            final Integer refs = mBitmapRefs.get(bitmap);
+            mBitmapRefs.put(bitmap, refs != null ? refs + 1 : 1);
+        }
+    }
+
+    private void releaseBitmap(Bitmap bitmap) {
+        final Integer refs = bitmap != null ? mBitmapRefs.get(bitmap) : null;
+        if (refs == null) {
+            return;
+        }
+        if (refs > 1) {
+            mBitmapRefs.put(bitmap, refs - 1);
+        } else {
+            mBitmapRefs.remove(bitmap);
+            if (mBitmapPool != null) {
+                mBitmapPool.release(bitmap);
+            }
+        }
+    }
+
+    private final class Request implements Runnable {
+        final ImageView view;
+        final String uri;
+        final String key;
+        final int targetWidth;
+        /** The height to crop to, or 0 to keep the aspect ratio */
+        final int targetHeight;
+        final CellBitmapPool pool;
+        Future<?> future;
+        volatile boolean cancelled;
+
+        Request(ImageView view, String uri, String key, int targetWidth, int targetHeight) {
+            this.view = view;
+            this.uri = uri;
+            this.key = key;
+            this.targetWidth = targetWidth;
+            this.targetHeight = targetHeight;
+            this.pool = mBitmapPool;
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            Bitmap bitmap = null;
+            try {
+                bitmap = load(this);
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot load " + uri, e);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Cannot decode " + uri, e);
+            } catch (OutOfMemoryError e) {
+                Log.w(TAG, "Out of memory decoding " + uri, e);
+            } finally {
+                // Always delivered, so the view drops the request and can be bound again
+                final Bitmap loaded = bitmap;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(Request.this, loaded);
+                    }
+                });
+            }
+        }
+    }
+
+    private void deliver(Request request, Bitmap bitmap) {
+        // The view may have been bound to another position meanwhile
+        if (!request.cancelled && request.view.getTag(R.id.grid_image_request) == request) {
+            request.view.setTag(R.id.grid_image_request, null);
+            setImage(request.view, bitmap);
+        }
+        if (bitmap != null) {
+            if (request.pool == mBitmapPool) {
+                acquireBitmap(bitmap);
+            }
+            mMemoryCache.put(request.key, bitmap);
+        }
+    }
+
+    private Bitmap load(Request request) throws IOException {
+        final Uri uri = Uri.parse(request.uri);
+        final String scheme = uri.getScheme();
+        File file = null;
+        if ("http".equals(scheme) || "https".equals(scheme)) {
+            file = getDiskCacheFile(request.uri);
+            if (!file.exists()) {
+                download(request.uri, file);
+            } else {
+                // Keeps it from being the next one trimmed
+                file.setLastModified(System.currentTimeMillis());
+            }
+        }
+        if (request.cancelled) {
+            return null;
+        }
+
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(uri, file, options);
+        if (request.cancelled) {
+            return null;
+        }
+        setSampleSize(options, request.targetWidth, request.targetHeight);
+        if (request.pool == null) {
+            return decode(uri, file, options);
+        }
+
+        final Bitmap decoded = decodeReusing(uri, file, options);
+        if (decoded == null) {
+            return null;
+        }
+        final Bitmap cell = request.pool.obtain();
+        drawCenterCrop(decoded, cell);
+        return cell;
+    }
+
+    private Bitmap decode(Uri uri, File file, BitmapFactory.Options options)
+            throws IOException {
+        if (file != null) {
+            return BitmapFactory.decodeFile(file.getPath(), options);
+        }
+        return decodeStream(uri, options);
+    }
+
+    /**
+     * Decodes into the bitmap of the last decode of this thread if it is
+     * large enough. KitKat and up can reuse a bitmap whatever the size of the
+     * image, so once images are drawn into cells no new pixels are allocated.
+     */
+    private Bitmap decodeReusing(Uri uri, File file, BitmapFactory.Options options)
+            throws IOException {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return decode(uri, file, options);
+        }
+        final Bitmap reusable = mDecodeBitmap.get();
+        options.inMutable = true;
+        Bitmap decoded = null;
+        if (reusable != null && canDecodeInto(reusable, options)) {
+            options.inBitmap = reusable;
+            try {
+                decoded = decode(uri, file, options);
+            } catch (IllegalArgumentException e) {
+                // The decoder could not reuse it after all
+                options.inBitmap = null;
+            }
+        }
+        if (decoded == null) {
+            options.inBitmap = null;
+            decoded = decode(uri, file, options);
+        }
+        if (decoded != null && decoded != reusable) {
+            mDecodeBitmap.set(decoded);
+        }
+        return decoded;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static boolean canDecodeInto(Bitmap bitmap, BitmapFactory.Options options) {
+        final int sampleSize = options.inSampleSize;
+        final long width = (options.outWidth + sampleSize - 1) / sampleSize;
+        final long height = (options.outHeight + sampleSize - 1) / sampleSize;
+        return width * height * 4 <= bitmap.getAllocationByteCount();
+    }
+
+    /**
+     * Draws the middle of the source with the aspect ratio of the target
+     * over all of the target.
+     */
+    private static void drawCenterCrop(Bitmap source, Bitmap target) {
+        final int sourceWidth = source.getWidth();
+        final int sourceHeight = source.getHeight();
+        final int targetWidth = target.getWidth();
+        final int targetHeight = target.getHeight();
+        int cropWidth = sourceWidth;
+        int cropHeight = (int) ((long) sourceWidth * targetHeight / targetWidth);
+        if (cropHeight > sourceHeight) {
+            cropHeight = sourceHeight;
+            cropWidth = (int) ((long) sourceHeight * targetWidth / targetHeight);
+        }
+        final int left = (sourceWidth - cropWidth) / 2;
+        final int top = (sourceHeight - cropHeight) / 2;
+        new Canvas(target).drawBitmap(source,
+                new Rect(left, top, left + cropWidth, top + cropHeight),
+                new Rect(0, 0, targetWidth, targetHeight),
+                new Paint(Paint.FILTER_BITMAP_FLAG));
+    }
+
+    private Bitmap decodeStream(Uri uri, BitmapFactory.Options options) throws IOException {
+        final InputStream in = mContext.getContentResolver().openInputStream(uri);
+        if (in == null) {
+            throw new IOException("No content at " + uri);
+        }
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Sets the largest power of two sample size that keeps the image at
+     * least as large as the target, and turns off bounds-only decoding.
+     *
+     * @param targetHeight the height to keep, or 0 if only the width matters
+     */
+    private static void setSampleSize(BitmapFactory.Options options, int targetWidth,
+            int targetHeight) {
+        int sampleSize = 1;
+        if (targetWidth > 0) {
+            while (options.outWidth / (sampleSize * 2) >= targetWidth
+                    && options.outHeight / (sampleSize * 2) >= targetHeight) {
+                sampleSize *= 2;
+            }
+        }
+        options.inSampleSize = sampleSize;
+        options.inJustDecodeBounds = false;
+    }
+
+    private void download(String url, File file) throws IOException {
+        mDiskCacheDir.mkdirs();
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        // Written aside, so a partial download is never taken for an image. Each
+        // download has a file of its own, as the same URL may be loaded twice
+        // at once, e.g. by a prefetch and a bind.
+        final File partial = File.createTempFile(file.getName(), PARTIAL_SUFFIX, mDiskCacheDir);
+        boolean written = false;
+        try {
+            final InputStream in = connection.getInputStream();
+            final OutputStream out = new FileOutputStream(partial);
+            try {
+                final byte[] buffer = new byte[8192];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+            } finally {
+                out.close();
+                in.close();
+            }
+            // Renaming replaces the file of a download that finished first
+            written = partial.renameTo(file);
+        } finally {
+            connection.disconnect();
+            if (!written) {
+                partial.delete();
+            }
+        }
+        if (!written) {
+            throw new IOException("Cannot write " + file);
+        }
+        trimDiskCache();
+    }
+
+    private synchronized void trimDiskCache() {
+        final File[] files = mDiskCacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        // Downloads in progress count, but are not deleted
+        int count = 0;
+        for (File file : files) {
+            if (!file.getName().endsWith(PARTIAL_SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        if (size <= mDiskCacheBytes) {
+            return;
+        }
+        // Least recently used first
+        Arrays.sort(files, 0, count, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                final long l = lhs.lastModified();
+                final long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < count && size > mDiskCacheBytes; i++) {
+            final long length = files[i].length();
+            if (files[i].delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private File getDiskCacheFile(String url) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("MD5").digest(url.getBytes("UTF-8"));
+            final StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16));
+                name.append(Character.forDigit(b & 0xf, 16));
+            }
+            return new File(mDiskCacheDir, name.toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
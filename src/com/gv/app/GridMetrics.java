@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.Arrays;
+
+/**
+ * Counters and bind latencies collected by a grid while metrics are enabled
+ * with {@link HeaderFooterGridView#setMetricsEnabled(boolean)}.
+ * <p>
+ * The cells are counted per view type of the grid's wrapper adapter, so the
+ * view types of the client adapter come first and the placeholders follow.
+ * Header and footer rows are not bound and are not counted. A cell counts as
+ * a convert view hit when the adapter returned the recycled cell the grid
+ * offered for it, and as a miss when it returned another view.
+ * <p>
+ * Bind latencies go into {@link #BUCKET_COUNT} buckets whose bounds double:
+ * bucket 0 holds binds under 1&micro;s, bucket {@code i} those from
+ * 2<sup>i-1</sup> up to 2<sup>i</sup>&micro;s and the last bucket everything
+ * slower. While metrics are enabled, the grid also marks each bind and
+ * layout pass as a section in systrace from Jelly Bean MR2 on.
+ * <p>
+ * The counters are only updated and meant to be read on the UI thread.
+ */
+public final class GridMetrics {
+
+    /**
+     * The number of buckets in a bind latency histogram.
+     */
+    public static final int BUCKET_COUNT = 16;
+
+    static final String TRACE_BIND = "HeaderFooterGridView bind";
+    static final String TRACE_LAYOUT = "HeaderFooterGridView layout";
+
+    private int mViewTypeCount;
+    private int[] mGetViewCounts = new int[2];
+    private int[] mConvertViewHits = new int[2];
+    private int[] mBindLatencies = new int[2 * BUCKET_COUNT];
+    private int mPlaceholderAllocations;
+    private int mMeasurePasses;
+    private int mLayoutPasses;
+    private int mDataSetChanges;
+    private int mRangeChanges;
+
+    GridMetrics() {
+    }
+
+    /**
+     * @return one more than the highest view type counted so far
+     */
+    public int getViewTypeCount() {
+        return mViewTypeCount;
+    }
+
+    /**
+     * @return how many cells of the view type the grid got from its adapter
+     */
+    public int getViewCount(int viewType) {
+        return viewType < mViewTypeCount ? mGetViewCounts[viewType] : 0;
+    }
+
+    /**
+     * @return how many cells of the view type the adapter bound by
+     *         converting the recycled cell it was offered
+     */
+    public int getConvertViewHitCount(int viewType) {
+        return viewType < mViewTypeCount ? mConvertViewHits[viewType] : 0;
+    }
+
+    /**
+     * @return how many cells of the view type the adapter returned a view
+     *         for other than a recycled cell, mostly one it created
+     */
+    public int getConvertViewMissCount(int viewType) {
+        return getViewCount(viewType) - getConvertViewHitCount(viewType);
+    }
+
+    /**
+     * @return the number of binds of the view type in each latency bucket
+     */
+    public int[] getBindLatencyHistogram(int viewType) {
+        if (viewType >= mViewTypeCount) {
+            return new int[BUCKET_COUNT];
+        }
+        final int start = viewType * BUCKET_COUNT;
+        return Arrays.copyOfRange(mBindLatencies, start, start + BUCKET_COUNT);
+    }
+
+    /**
+     * @return the bind latency in nanoseconds below which a bind falls into
+     *         the bucket, or {@link Long#MAX_VALUE} for the last bucket
+     */
+    public static long getBucketUpperBoundNanos(int bucket) {
+        return bucket < BUCKET_COUNT - 1 ? 1000L << bucket : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return how many placeholder cells the wrapper adapters created
+     */
+    public int getPlaceholderAllocationCount() {
+        return mPlaceholderAllocations;
+    }
+
+    /**
+     * @return how many times the grid was measured
+     */
+    public int getMeasureCount() {
+        return mMeasurePasses;
+    }
+
+    /**
+     * @return how many times the grid laid out its children
+     */
+    public int getLayoutCount() {
+        return mLayoutPasses;
+    }
+
+    /**
+     * @return how many times the wrapper adapter told the grid that its
+     *         whole data set changed
+     */
+    public int getDataSetChangedCount() {
+        return mDataSetChanges;
+    }
+
+    /**
+     * @return how many item range changes the wrapper adapter told the grid
+     *         about, each of which spares a full data set change
+     */
+    public int getRangeChangedCount() {
+        return mRangeChanges;
+    }
+
+    /**
+     * Sets all counters and histograms back to zero.
+     */
+    public void reset() {
+        mViewTypeCount = 0;
+        Arrays.fill(mGetViewCounts, 0);
+        Arrays.fill(mConvertViewHits, 0);
+        Arrays.fill(mBindLatencies, 0);
+        mPlaceholderAllocations = 0;
+        mMeasurePasses = 0;
+        mLayoutPasses = 0;
+        mDataSetChanges = 0;
+        mRangeChanges = 0;
+    }
+
+    void onBind(int viewType, boolean reused, long latencyNanos) {
+        if (viewType < 0) {
+            return;
+        }
+        if (viewType >= mViewTypeCount) {
+            ensureCapacity(viewType + 1);
+            mViewTypeCount = viewType + 1;
+        }
+        mGetViewCounts[viewType]++;
+        if (reused) {
+            mConvertViewHits[viewType]++;
+        }
+        mBindLatencies[viewType * BUCKET_COUNT + getBucket(latencyNanos)]++;
+    }
+
+    void onPlaceholderAllocated() {
+        mPlaceholderAllocations++;
+    }
+
+    void onMeasure() {
+        mMeasurePasses++;
+    }
+
+    void onLayout() {
+        mLayoutPasses++;
+    }
+
+    void onDataSetChanged() {
+        mDataSetChanges++;
+    }
+
+    void onRangeChanged() {
+        mRangeChanges++;
+    }
+
+    private static int getBucket(long latencyNanos) {
+        final long micros = latencyNanos / 1000;
+        if (micros >= 1L << (BUCKET_COUNT - 2)) {
+            return BUCKET_COUNT - 1;
+        }
+        return 32 - Integer.numberOfLeadingZeros((int) micros);
+    }
+
+    private void ensureCapacity(int viewTypeCount) {
+        if (viewTypeCount > mGetViewCounts.length) {
+            final int capacity = Math.max(viewTypeCount, mGetViewCounts.length * 2);
+            mGetViewCounts = Arrays.copyOf(mGetViewCounts, capacity);
+            mConvertViewHits = Arrays.copyOf(mConvertViewHits, capacity);
+            mBindLatencies = Arrays.copyOf(mBindLatencies, capacity * BUCKET_COUNT);
+        }
+    }
+
+    static void beginSection(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            beginSectionJBMR2(name);
+        }
+    }
+
+    static void endSection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            endSectionJBMR2();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void beginSectionJBMR2(String name) {
+        Trace.beginSection(name);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void endSectionJBMR2() {
+        Trace.endSection();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("GridMetrics{measure=");
+        sb.append(mMeasurePasses).append(", layout=").append(mLayoutPasses)
+                .append(", dataSetChanged=").append(mDataSetChanges)
+                .append(", rangeChanged=").append(mRangeChanges)
+                .append(", placeholders=").append(mPlaceholderAllocations);
+        for (int type = 0; type < mViewTypeCount; type++) {
+            sb.append(", type").append(type).append("={getView=")
+                    .append(mGetViewCounts[type]).append(", hits=")
+                    .append(mConvertViewHits[type]).append('}');
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+/**
+ * Segment table that maps flat grid positions onto the four parts of a grid
+ * with fixed views: full-width header rows, adapter items, trailing fillers
+ * that complete the last item row, and full-width footer rows.
+ * <p>
+ * Each header and footer row takes <code>numColumns</code> positions: the
+ * fixed view itself in the first column followed by placeholders.
+ * <p>
+ * The table only changes in {@link #rebuild(int, int, int, int)}, which the
+ * wrapper adapters call when the data or the number of columns changes, so
+ * every lookup is constant time. The per-position methods of the wrapper
+ * adapter are resolved here too, against the {@link Cells} it describes its
+ * items and fixed views with. This class has no Android dependencies.
+ */
+final class GridPositionMap {
+
+    static final int SEGMENT_HEADER = 0;
+    static final int SEGMENT_ITEM = 1;
+    static final int SEGMENT_FILLER = 2;
+    static final int SEGMENT_FOOTER = 3;
+
+    private static final int SEGMENT_COUNT = 4;
+
+    /**
+     * The items and fixed views a map lays out, as the wrapper adapter sees
+     * them. Fixed views are given by segment and index.
+     */
+    interface Cells {
+        boolean isItemEnabled(int adapterPosition);
+
+        Object getItem(int adapterPosition);
+
+        long getItemId(int adapterPosition);
+
+        int getItemViewType(int adapterPosition);
+
+        /** @return the view type of the placeholders and fillers */
+        int getPlaceholderViewType();
+
+        boolean isFixedViewSelectable(int segment, int index);
+
+        Object getFixedViewData(int segment, int index);
+
+        /** @return the serial of the fixed view, see {@link #getFixedId(int, int)} */
+        int getFixedViewSerial(int segment, int index);
+    }
+
+    /**
+     * The smallest item id, from which the ids of the fixed views and
+     * placeholders are taken. The wrapper adapters pass the ids of the items
+     * on unchecked, assuming that no item id falls in the 2<sup>52</sup>
+     * values from here on. Positions, row ids and int hashes never do; an
+     * item id that did could be taken for a fixed view.
+     */
+    static final long FIXED_ID_START = Long.MIN_VALUE;
+
+    // Bits of a fixed id that hold the column
+    private static final int FIXED_ID_COLUMN_BITS = 20;
+
+    // mSegmentEnd[i] is the first position after segment i, so the last
+    // entry is also the total number of positions
+    private final int[] mSegmentEnd = new int[SEGMENT_COUNT];
+
+    private int mNumColumns = 1;
+    private int mHeaderCount;
+    private int mAdapterCount;
+    private int mFooterCount;
+
+    /**
+     * Recomputes the segment boundaries.
+     *
+     * @param headerCount number of full-width header rows
+     * @param adapterCount number of items in the wrapped adapter
+     * @param footerCount number of full-width footer rows
+     * @param numColumns number of columns of the grid, 1 or more
+     */
+    void rebuild(int headerCount, int adapterCount, int footerCount, int numColumns) {
+        if (numColumns < 1) {
+            throw new IllegalArgumentException("Number of columns must be 1 or more");
+        }
+        mHeaderCount = headerCount;
+        mAdapterCount = adapterCount;
+        mFooterCount = footerCount;
+        mNumColumns = numColumns;
+
+        // Fillers are only needed to push the footers onto a row of their own
+        final int fillers = footerCount > 0
+                ? (numColumns - adapterCount % numColumns) % numColumns : 0;
+
+        final int[] end = mSegmentEnd;
+        end[SEGMENT_HEADER] = headerCount * numColumns;
+        end[SEGMENT_ITEM] = end[SEGMENT_HEADER] + adapterCount;
+        end[SEGMENT_FILLER] = end[SEGMENT_ITEM] + fillers;
+        end[SEGMENT_FOOTER] = end[SEGMENT_FILLER] + footerCount * numColumns;
+    }
+
+    int getCount() {
+        return mSegmentEnd[SEGMENT_FOOTER];
+    }
+
+    int getNumColumns() {
+        return mNumColumns;
+    }
+
+    int getHeaderCount() {
+        return mHeaderCount;
+    }
+
+    int getAdapterCount() {
+        return mAdapterCount;
+    }
+
+    int getFooterCount() {
+        return mFooterCount;
+    }
+
+    /**
+     * @return the first position of the given segment
+     */
+    int getSegmentStart(int segment) {
+        return segment == SEGMENT_HEADER ? 0 : mSegmentEnd[segment - 1];
+    }
+
+    /**
+     * @return the position following the last position of the given segment
+     */
+    int getSegmentEnd(int segment) {
+        return mSegmentEnd[segment];
+    }
+
+    /**
+     * @return one of the <code>SEGMENT_*</code> constants
+     * @throws ArrayIndexOutOfBoundsException if the position is out of range
+     */
+    int getSegment(int position) {
+        final int[] end = mSegmentEnd;
+        if (position < 0 || position >= end[SEGMENT_FOOTER]) {
+            throw new ArrayIndexOutOfBoundsException(position);
+        }
+        if (position < end[SEGMENT_HEADER]) {
+            return SEGMENT_HEADER;
+        }
+        if (position < end[SEGMENT_ITEM]) {
+            return SEGMENT_ITEM;
+        }
+        if (position < end[SEGMENT_FILLER]) {
+            return SEGMENT_FILLER;
+        }
+        return SEGMENT_FOOTER;
+    }
+
+    /**
+     * @return the position in the wrapped adapter of an item position
+     */
+    int getAdapterPosition(int position) {
+        return position - mSegmentEnd[SEGMENT_HEADER];
+    }
+
+    /**
+     * @return the grid position of a position in the wrapped adapter
+     */
+    int getGridPosition(int adapterPosition) {
+        return adapterPosition + mSegmentEnd[SEGMENT_HEADER];
+    }
+
+    /**
+     * @return the index of the header or footer whose row holds the position
+     */
+    int getFixedIndex(int position, int segment) {
+        return (position - getSegmentStart(segment)) / mNumColumns;
+    }
+
+    /**
+     * @return true if the position is the first column of a header or footer
+     *         row, i.e. the cell showing the fixed view itself
+     */
+    boolean isFixedView(int position, int segment) {
+        return (segment == SEGMENT_HEADER || segment == SEGMENT_FOOTER)
+                && (position - getSegmentStart(segment)) % mNumColumns == 0;
+    }
+
+    /**
+     * @return true if the position is an invisible cell: a header or footer
+     *         placeholder or a trailing filler
+     */
+    boolean isPlaceholder(int position, int segment) {
+        return segment == SEGMENT_FILLER
+                || (segment != SEGMENT_ITEM && !isFixedView(position, segment));
+    }
+
+    /**
+     * @return the stable id of a cell in a header or footer row, or of a
+     *         trailing filler for a serial of 0
+     *
+     * @param serial the serial number of the fixed view, 1 or more, unique
+     *        within the grid
+     * @param column the column of the cell
+     */
+    static long getFixedId(int serial, int column) {
+        return FIXED_ID_START + ((long) serial << FIXED_ID_COLUMN_BITS) + column;
+    }
+
+    /**
+     * @return whether the cell at the position can be selected and clicked:
+     *         an enabled item or a selectable fixed view
+     * @throws ArrayIndexOutOfBoundsException if the position is out of range
+     */
+    boolean isEnabled(int position, Cells cells) {
+        final int segment = getSegment(position);
+        if (segment == SEGMENT_ITEM) {
+            return cells.isItemEnabled(getAdapterPosition(position));
+        }
+        return isFixedView(position, segment)
+                && cells.isFixedViewSelectable(segment, getFixedIndex(position, segment));
+    }
+
+    /**
+     * @return the item, the data of the fixed view, or null for a placeholder
+     * @throws ArrayIndexOutOfBoundsException if the position is out of range
+     */
+    Object getItem(int position, Cells cells) {
+        final int segment = getSegment(position);
+        if (segment == SEGMENT_ITEM) {
+            return cells.getItem(getAdapterPosition(position));
+        }
+        if (isFixedView(position, segment)) {
+            return cells.getFixedViewData(segment, getFixedIndex(position, segment));
+        }
+        return null;
+    }
+
+    /**
+     * @return the id of the item, the id of the fixed view cell or filler
+     *         from {@link #getFixedId(int, int)}, or -1 if the position is
+     *         out of range
+     */
+    long getItemId(int position, Cells cells) {
+        if (position < 0 || position >= getCount()) {
+            return -1;
+        }
+        final int segment = getSegment(position);
+        switch (segment) {
+            case SEGMENT_ITEM:
+                return cells.getItemId(getAdapterPosition(position));
+            case SEGMENT_FILLER:
+                return getFixedId(0, getColumn(position));
+            default:
+                return getFixedId(
+                        cells.getFixedViewSerial(segment, getFixedIndex(position, segment)),
+                        getColumn(position));
+        }
+    }
+
+    /**
+     * @return the view type of the item, the placeholder view type, or
+     *         <code>headerOrFooterType</code> for a fixed view
+     * @throws ArrayIndexOutOfBoundsException if the position is out of range
+     */
+    int getItemViewType(int position, Cells cells, int headerOrFooterType) {
+        final int segment = getSegment(position);
+        if (segment == SEGMENT_ITEM) {
+            return cells.getItemViewType(getAdapterPosition(position));
+        }
+        if (isPlaceholder(position, segment)) {
+            return cells.getPlaceholderViewType();
+        }
+        return headerOrFooterType;
+    }
+
+    /**
+     * @return the column of a position; all segments start on a row boundary
+     */
+    int getColumn(int position) {
+        return position % mNumColumns;
+    }
+
+    /**
+     * @return the row of a position; all segments start on a row boundary
+     */
+    int getRow(int position) {
+        return position / mNumColumns;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.widget.ListAdapter;
+
+/**
+ * Binds the cells of the rows about to scroll into view while the UI thread
+ * is idle between frames, so the frame that reveals them only has to measure
+ * and attach them.
+ * <p>
+ * The direction and speed of the scroll, followed by the grid with a
+ * {@link ScrollSpeedTracker}, decide which rows come next and how many of
+ * them, up to the configured number. One cell is bound per idle callback,
+ * which keeps each of them short. The cells are parked in the
+ * {@link HeaderFooterViewGridAdapter}, which hands them out when the grid
+ * asks for their position.
+ */
+final class GridPrefetcher implements MessageQueue.IdleHandler {
+
+    // How far ahead the scroll speed is projected to pick the number of rows
+    private static final int LOOKAHEAD_MS = 64;
+
+    private final HeaderFooterGridView mGrid;
+    // Off until the grid is told how many rows to prefetch
+    private int mRowCount;
+
+    private boolean mScheduled;
+
+    // The positions left to prefetch, walked from mNextPosition towards mEndPosition
+    private int mNextPosition;
+    private int mEndPosition;
+    private int mDirection;
+
+    GridPrefetcher(HeaderFooterGridView grid) {
+        mGrid = grid;
+    }
+
+    /**
+     * @param rowCount the most rows to prefetch ahead of the scroll, 0 to
+     *        turn prefetching off
+     */
+    void setRowCount(int rowCount) {
+        mRowCount = rowCount;
+        if (rowCount == 0) {
+            stop();
+        }
+    }
+
+    int getRowCount() {
+        return mRowCount;
+    }
+
+    /**
+     * Called when the grid scrolled, to pick the positions to prefetch.
+     */
+    void onScroll(int firstVisibleItem, int visibleItemCount, ScrollSpeedTracker tracker) {
+        if (mRowCount == 0) {
+            return;
+        }
+        final HeaderFooterViewGridAdapter wrapper = getWrapper();
+        final int numColumns = mGrid.getNumColumnsCompat();
+        if (wrapper == null || numColumns < 1) {
+            return;
+        }
+
+        final int rowHeight = ScrollSpeedTracker.getRowHeight(mGrid.getChildAt(0));
+        final int rows = Math.min(mRowCount,
+                1 + (int) (tracker.getSpeed() * LOOKAHEAD_MS / rowHeight));
+        final int count = wrapper.getCount();
+        if (tracker.getDistance() > 0) {
+            mDirection = 1;
+            mNextPosition = firstVisibleItem + visibleItemCount;
+            mEndPosition = Math.max(mNextPosition,
+                    Math.min(mNextPosition + rows * numColumns, count));
+        } else {
+            mDirection = -1;
+            mNextPosition = firstVisibleItem - 1;
+            mEndPosition = Math.max(firstVisibleItem - rows * numColumns, 0) - 1;
+        }
+        wrapper.trimPrefetchedViews(Math.min(mNextPosition, mEndPosition + 1),
+                Math.max(mNextPosition + 1, mEndPosition));
+        schedule();
+    }
+
+    private HeaderFooterViewGridAdapter getWrapper() {
+        final ListAdapter adapter = mGrid.getAdapter();
+        return adapter instanceof HeaderFooterViewGridAdapter
+                ? (HeaderFooterViewGridAdapter) adapter : null;
+    }
+
+    private void schedule() {
+        if (!mScheduled && mNextPosition != mEndPosition) {
+            mScheduled = true;
+            Looper.myQueue().addIdleHandler(this);
+        }
+    }
+
+    /**
+     * Stops prefetching, for when the grid leaves the window or prefetching
+     * is turned off.
+     */
+    void stop() {
+        mNextPosition = mEndPosition;
+        if (mScheduled) {
+            mScheduled = false;
+            Looper.myQueue().removeIdleHandler(this);
+        }
+    }
+
+    @Override
+    public boolean queueIdle() {
+        final HeaderFooterViewGridAdapter wrapper = getWrapper();
+        while (wrapper != null && mNextPosition != mEndPosition) {
+            final int position = mNextPosition;
+            mNextPosition += mDirection;
+            if (position < wrapper.getCount() && wrapper.prefetchView(position, mGrid)) {
+                // One cell per idle callback, the next frame may be due soon
+                break;
+            }
+        }
+        mScheduled = wrapper != null && mNextPosition != mEndPosition;
+        return mScheduled;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import java.util.Arrays;
+
+/**
+ * Maps the items of a {@link ColumnSpanAdapter} onto grid positions. An item
+ * takes one position per column it spans: the item itself followed by
+ * placeholders. An item that does not fit in its row is pushed to the next
+ * one, and the rest of the row is filled with placeholders.
+ * <p>
+ * A row also ends after an item that spans several columns, and the rest
+ * of it is filled with placeholders. GridView moves on to the next row from
+ * the bottom of the last cell in the row, so that cell has to carry the
+ * height of the row. A placeholder can be given the height of the tallest
+ * cell before it, while an item after the spanning one would set the row to
+ * its own height and let a taller spanning cell overlap the next row.
+ * <p>
+ * The first position and the span of each item are kept in primitive arrays
+ * and computed only as far as a lookup needs. A change drops what was
+ * computed from the first changed item on, so the items before it keep
+ * their rows. A position is resolved with a binary search.
+ */
+final class GridSpanTable {
+
+    /** The position is the first cell of an item */
+    static final int TYPE_ITEM = 0;
+    /** The position is covered by the item before it */
+    static final int TYPE_SPAN_PLACEHOLDER = 1;
+    /** The position completes a row the next item did not fit in, or ends a spanning one */
+    static final int TYPE_ROW_PLACEHOLDER = 2;
+
+    interface SpanLookup {
+        int getSpan(int item);
+    }
+
+    private final SpanLookup mLookup;
+
+    // mStart[i] is the position of item i, and mSpan[i] its span in columns;
+    // only the first mComputedCount entries are valid
+    private int[] mStart = new int[0];
+    private int[] mSpan = new int[0];
+    private int mComputedCount;
+    private int mItemCount;
+    private int mNumColumns = 1;
+
+    GridSpanTable(SpanLookup lookup) {
+        mLookup = lookup;
+    }
+
+    /**
+     * @param numColumns number of columns of the grid, 1 or more
+     */
+    void setNumColumns(int numColumns) {
+        if (numColumns < 1) {
+            throw new IllegalArgumentException("Number of columns must be 1 or more");
+        }
+        if (mNumColumns != numColumns) {
+            mNumColumns = numColumns;
+            mComputedCount = 0;
+        }
+    }
+
+    int getNumColumns() {
+        return mNumColumns;
+    }
+
+    /**
+     * Sets the number of items, dropping the rows from the first changed
+     * item on.
+     *
+     * @param itemCount the number of items
+     * @param firstChangedItem the first item whose span or position changed
+     */
+    void setItemCount(int itemCount, int firstChangedItem) {
+        mItemCount = itemCount;
+        invalidateFrom(firstChangedItem);
+        if (mStart.length < itemCount) {
+            final int capacity = Math.max(itemCount, mStart.length * 2);
+            mStart = Arrays.copyOf(mStart, capacity);
+            mSpan = Arrays.copyOf(mSpan, capacity);
+        }
+    }
+
+    /**
+     * Drops the rows from the item on, e.g. because its span changed.
+     */
+    void invalidateFrom(int item) {
+        mComputedCount = Math.max(0, Math.min(mComputedCount, Math.min(item, mItemCount)));
+    }
+
+    int getItemCount() {
+        return mItemCount;
+    }
+
+    /**
+     * @return the number of grid positions, which computes every row
+     */
+    int getCount() {
+        if (mItemCount == 0) {
+            return 0;
+        }
+        computeThrough(mItemCount - 1);
+        return getEnd(mItemCount - 1);
+    }
+
+    /**
+     * @return the grid position of the item
+     */
+    int getGridPosition(int item) {
+        computeThrough(item);
+        return mStart[item];
+    }
+
+    /**
+     * @return the span of the item in columns
+     */
+    int getSpan(int item) {
+        computeThrough(item);
+        return mSpan[item];
+    }
+
+    /**
+     * @return the item whose cell is at the position or before it
+     */
+    int getItem(int position) {
+        // Computes until an item starts past the position
+        while (mComputedCount < mItemCount
+                && (mComputedCount == 0 || mStart[mComputedCount - 1] <= position)) {
+            computeThrough(Math.min(mItemCount - 1, mComputedCount + 64));
+        }
+        int index = Arrays.binarySearch(mStart, 0, mComputedCount, position);
+        if (index < 0) {
+            // The insertion point is after the item covering the position
+            index = -index - 2;
+        }
+        return index;
+    }
+
+    /**
+     * @return one of the <code>TYPE_*</code> constants
+     */
+    int getType(int position, int item) {
+        final int start = mStart[item];
+        if (position == start) {
+            return TYPE_ITEM;
+        }
+        return position < start + mSpan[item] ? TYPE_SPAN_PLACEHOLDER : TYPE_ROW_PLACEHOLDER;
+    }
+
+    /**
+     * @return the row of a position
+     */
+    int getRow(int position) {
+        return position / mNumColumns;
+    }
+
+    /**
+     * @return the number of columns an item that asks for the given span
+     *         covers, between 1 and the number of columns
+     */
+    int clampSpan(int span) {
+        return Math.max(1, Math.min(mNumColumns, span));
+    }
+
+    private void computeThrough(int item) {
+        final int numColumns = mNumColumns;
+        int i = mComputedCount;
+        int end = i == 0 ? 0 : getEnd(i - 1);
+        for (; i <= item; i++) {
+            final int span = clampSpan(mLookup.getSpan(i));
+            final int column = end % numColumns;
+            if (column + span > numColumns) {
+                end += numColumns - column;
+            }
+            mStart[i] = end;
+            mSpan[i] = span;
+            end = getEnd(i);
+        }
+        mComputedCount = Math.max(mComputedCount, item + 1);
+    }
+
+    /**
+     * @return the position after the item and the placeholders that follow
+     *         it, which is the end of its row if it spans several columns
+     */
+    private int getEnd(int item) {
+        final int end = mStart[item] + mSpan[item];
+        if (mSpan[item] == 1) {
+            return end;
+        }
+        final int numColumns = mNumColumns;
+        return (end + numColumns - 1) / numColumns * numColumns;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+/**
+ * Implemented by adapters that want to know which of their items a
+ * {@link HeaderFooterGridView} shows, e.g. to load the data around them.
+ * The positions are the adapter's own: header rows, footer rows and the
+ * placeholders that complete them are left out.
+ */
+public interface GridVisibleRangeListener {
+
+    /**
+     * Called when the grid scrolled or laid out its children and the items
+     * it shows changed.
+     *
+     * @param firstPosition the first visible item, or -1 if none is
+     * @param lastPosition the last visible item, or -1 if none is
+     */
+    void onVisibleRangeChanged(int firstPosition, int lastPosition);
+}
@@ -0,0 +1,1164 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.database.DataSetObserver;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.FrameLayout;
+import android.widget.GridView;
+import android.widget.ListAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link GridView} that supports adding header rows at the top and footer
+ * rows at the bottom in a very similar way to {@link android.widget.ListView}.
+ * See {@link HeaderFooterGridView#addHeaderView(View, Object, boolean)} and
+ * {@link HeaderFooterGridView#addFooterView(View, Object, boolean)}
+ * <p>
+ * When the adapter is a {@link BaseGridAdapter}, its range notifications
+ * rebind only the visible cells they cover. The other cells are kept as they
+ * are, or moved to their new position if items were inserted or removed
+ * before them.
+ * <p>
+ * While scrolling, the cells of the next rows can be bound ahead of time
+ * when the UI thread is idle. See {@link #setPrefetchRowCount(int)}
+ * <p>
+ * The cells of a {@link DeferredBindAdapter} are bound in a cheaper way
+ * during fast flings. See {@link #setFastBindVelocity(int)}
+ * <p>
+ * Children are clipped to their bounds as in any GridView. Header and
+ * footer rows, and cells spanning several columns, are moved over the
+ * whole width they draw in after each layout pass and scroll, before they
+ * are drawn, so clipping does not cut them down to one column.
+ */
+public class HeaderFooterGridView extends GridView {
+    private static final String TAG = "HeaderFooterGridView";
+
+    private int mNumColsCompat = AUTO_FIT;
+    private int mColumnWidthCompat;
+    private int mHorizontalSpacingCompat;
+    private int mRequestedHorizontalSpacing;
+    // Set from GridView's constructor, so it has no initializer
+    private int mStretchModeCompat;
+    private int mRequestedNumColumns;
+    private int mRequestedColumnWidth;
+
+    /**
+     * A class that represents a fixed view in a list, for example a header at the top
+     * or a footer at the bottom.
+     */
+    static class FixedViewInfo {
+        /** The view to add to the grid */
+        public View view;
+        public ViewGroup viewContainer;
+        /** The data backing the view. This is returned from {@link ListAdapter#getItem(int)}. */
+        public Object data;
+        /** <code>true</code> if the fixed view should be selectable in the grid */
+        public boolean isSelectable;
+        /** Tells the fixed view apart in its item ids, see {@link GridPositionMap#getFixedId} */
+        public int serial;
+    }
+
+    private ArrayList<FixedViewInfo> mHeaderViewInfos = new ArrayList<FixedViewInfo>();
+    private ArrayList<FixedViewInfo> mFooterViewInfos = new ArrayList<FixedViewInfo>();
+
+    // The serial of the next fixed view; 0 stands for the trailing fillers
+    private int mNextFixedViewSerial = 1;
+
+    private int mBatchUpdateDepth;
+
+    // Range notifications not applied yet, in grid positions. Cells from
+    // mShiftedStart on may have moved.
+    private RangeObserver mPendingRangeObserver;
+    private int mChangedStart;
+    private int mChangedEnd;
+    private int mShiftedStart;
+    private boolean mFullChangePending;
+    private boolean mAttachingAdapter;
+
+    private CellInflationPool mCellInflationPool;
+    // Lays out the items of a ColumnSpanAdapter, under the header and footer wrapper if any
+    private SpannedGridWrapperAdapter mSpanWrapper;
+
+    private final GridPrefetcher mPrefetcher = new GridPrefetcher(this);
+    private final ScrollSpeedTracker mScrollSpeed = new ScrollSpeedTracker();
+    private int mScrollState = OnScrollListener.SCROLL_STATE_IDLE;
+    private int mFastBindVelocity;
+    private boolean mFastBinding;
+    private boolean mFixedViewCacheEnabled;
+    // Null unless metrics are enabled, so the hooks cost a field read
+    private GridMetrics mMetrics;
+    private OnScrollListener mClientScrollListener;
+
+    // Feeds the prefetcher and the binding mode, then passes the callbacks on to the client
+    private final OnScrollListener mScrollListener = new OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+            mScrollState = scrollState;
+            if (scrollState == SCROLL_STATE_IDLE) {
+                mScrollSpeed.reset();
+                setFastBinding(false);
+            }
+            if (mClientScrollListener != null) {
+                mClientScrollListener.onScrollStateChanged(view, scrollState);
+            }
+        }
+
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                int totalItemCount) {
+            // Rows scrolled in were laid out at their column like any other
+            alignWideCells();
+            if (mScrollState != SCROLL_STATE_IDLE && visibleItemCount > 0
+                    && mScrollSpeed.onScroll(firstVisibleItem, getChildAt(0),
+                            Math.max(mNumColsCompat, 1))) {
+                mPrefetcher.onScroll(firstVisibleItem, visibleItemCount, mScrollSpeed);
+                // The speed is in pixels per millisecond
+                setFastBinding(mScrollState == SCROLL_STATE_FLING && mFastBindVelocity > 0
+                        && mScrollSpeed.getSpeed() * 1000 > mFastBindVelocity);
+            }
+            final ListAdapter adapter = getAdapter();
+            if (adapter instanceof HeaderFooterViewGridAdapter) {
+                ((HeaderFooterViewGridAdapter) adapter).onVisibleRangeChanged(firstVisibleItem,
+                        firstVisibleItem + visibleItemCount - 1);
+            }
+            if (mClientScrollListener != null) {
+                mClientScrollListener.onScroll(view, firstVisibleItem, visibleItemCount,
+                        totalItemCount);
+            }
+        }
+    };
+
+    private RecyclerListener mClientRecyclerListener;
+    private final ArrayList<RecyclerListener> mCellRecyclerListeners =
+            new ArrayList<RecyclerListener>();
+
+    // Lets the helpers of the grid know about recycled cells, then the client
+    private final RecyclerListener mRecyclerListener = new RecyclerListener() {
+        @Override
+        public void onMovedToScrapHeap(View view) {
+            for (int i = mCellRecyclerListeners.size() - 1; i >= 0; i--) {
+                mCellRecyclerListeners.get(i).onMovedToScrapHeap(view);
+            }
+            if (mClientRecyclerListener != null) {
+                mClientRecyclerListener.onMovedToScrapHeap(view);
+            }
+        }
+    };
+
+    private void initHeaderFooterGridView() {
+        super.setOnScrollListener(mScrollListener);
+        super.setRecyclerListener(mRecyclerListener);
+        mFastBindVelocity = ViewConfiguration.get(getContext())
+                .getScaledMaximumFlingVelocity() / 4;
+        clearPendingRangeUpdates();
+    }
+
+    public HeaderFooterGridView(Context context) {
+        super(context);
+        initHeaderFooterGridView();
+    }
+
+    public HeaderFooterGridView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        initHeaderFooterGridView();
+    }
+
+    public HeaderFooterGridView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        initHeaderFooterGridView();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mMetrics != null) {
+            mMetrics.onMeasure();
+        }
+        // Figure out the columns the way GridView is about to, so the wrapper
+        // adapters have the right placeholders by the time GridView measures
+        // and lays out. Telling them afterwards costs a second layout pass.
+        final int available;
+        if (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            available = Math.max(mRequestedColumnWidth, 0);
+        } else {
+            available = MeasureSpec.getSize(widthMeasureSpec) -
+                    getPaddingLeft() - getPaddingRight();
+        }
+        onFigureColumns(available);
+        dispatchNumColumns(mNumColsCompat);
+
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+
+        if (isHR() && getNumColumnsHC() > 0 && getNumColumnsHC() != mNumColsCompat) {
+            // GridView settled on another count, e.g. because of the selector padding
+            mNumColsCompat = getNumColumnsHC();
+            dispatchNumColumns(mNumColsCompat);
+        }
+        if (mCellInflationPool != null) {
+            mCellInflationPool.onGridMeasured();
+        }
+    }
+
+    /**
+     * Pushes the number of columns into the wrapper adapters, which need it
+     * to compute their placeholders. A change is dispatched synchronously:
+     * this is called while measuring, where the resulting request for layout
+     * does not start another pass.
+     */
+    void dispatchNumColumns(int numColumns) {
+        if (mSpanWrapper != null) {
+            // The wrapper below counts the positions of this one
+            mSpanWrapper.setNumColumns(numColumns);
+            mSpanWrapper.flushPendingChanges();
+        }
+        ListAdapter adapter = getAdapter();
+        if (adapter != null && adapter instanceof HeaderFooterViewGridAdapter) {
+            final HeaderFooterViewGridAdapter wrapper = (HeaderFooterViewGridAdapter) adapter;
+            wrapper.setNumColumns(numColumns);
+            wrapper.flushPendingChanges();
+        }
+    }
+
+    private static boolean isHR() {
+        return android.os.Build.VERSION.SDK_INT >=
+                android.os.Build.VERSION_CODES.HONEYCOMB;
+    }
+
+    /**
+     * @return the number of columns figured out in the last measure pass, or
+     *         {@link #AUTO_FIT} before the first one
+     */
+    int getNumColumnsCompat() {
+        return mNumColsCompat;
+    }
+
+    /**
+     * @return the number of columns figured out in the last measure pass, or
+     *         a guess from the requested ones before the first
+     */
+    int getExpectedNumColumns() {
+        if (mNumColsCompat > 0) {
+            return mNumColsCompat;
+        }
+        // The same number onFigureColumns() makes up when it lacks information
+        return mRequestedNumColumns > 0 ? mRequestedNumColumns : 2;
+    }
+
+    /**
+     * @return the width of a column figured out in the last measure pass,
+     *         or a guess from the screen width before the first
+     */
+    int getExpectedColumnWidth() {
+        if (mColumnWidthCompat > 0) {
+            return mColumnWidthCompat;
+        }
+        return getResources().getDisplayMetrics().widthPixels / getExpectedNumColumns();
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private int getNumColumnsHC() {
+        return getNumColumns();
+    }
+
+    @Override
+    public void setHorizontalSpacing(int horizontalSpacing) {
+        super.setHorizontalSpacing(horizontalSpacing);
+        if (horizontalSpacing != mRequestedHorizontalSpacing) {
+            mRequestedHorizontalSpacing = horizontalSpacing;
+        }
+    }
+
+    /**
+     * @return the horizontal spacing figured out in the last measure pass,
+     *         wider than the one asked for when the grid stretches the
+     *         spacing, or the one asked for before the first pass
+     */
+    int getHorizontalSpacingCompat() {
+        return mNumColsCompat > 0 ? mHorizontalSpacingCompat : mRequestedHorizontalSpacing;
+    }
+
+    @Override
+    public void setStretchMode(int stretchMode) {
+        super.setStretchMode(stretchMode);
+        mStretchModeCompat = stretchMode;
+    }
+
+    @Override
+    public void setColumnWidth(int columnWidth) {
+        super.setColumnWidth(columnWidth);
+        if (columnWidth != mRequestedColumnWidth) {
+            mRequestedColumnWidth = columnWidth;
+        }
+    }
+
+    @Override
+    public void setNumColumns(int numColumns) {
+        super.setNumColumns(numColumns);
+        if (numColumns != mRequestedNumColumns) {
+            mRequestedNumColumns = numColumns;
+        }
+    }
+
+    private void onFigureColumns(int availableSpace) {
+        final int requestedHorizontalSpacing = mRequestedHorizontalSpacing;
+        final int requestedColumnWidth = mRequestedColumnWidth;
+
+        if (mRequestedNumColumns == AUTO_FIT) {
+            if (requestedColumnWidth > 0) {
+                // Client told us to pick the number of columns
+                mNumColsCompat = (availableSpace + requestedHorizontalSpacing) /
+                        (requestedColumnWidth + requestedHorizontalSpacing);
+            } else {
+                // Just make up a number if we don't have enough info
+                mNumColsCompat = 2;
+            }
+        } else {
+            // We picked the columns
+            mNumColsCompat = mRequestedNumColumns;
+        }
+
+        if (mNumColsCompat <= 0) {
+            mNumColsCompat = 1;
+        }
+
+        // What GridView stretches to fill the row
+        final int numColumns = mNumColsCompat;
+        final int spaceLeftOver = availableSpace - numColumns * requestedColumnWidth
+                - (numColumns - 1) * requestedHorizontalSpacing;
+        switch (mStretchModeCompat) {
+            case NO_STRETCH:
+                mColumnWidthCompat = requestedColumnWidth;
+                mHorizontalSpacingCompat = requestedHorizontalSpacing;
+                break;
+            case STRETCH_SPACING:
+                mColumnWidthCompat = requestedColumnWidth;
+                mHorizontalSpacingCompat = requestedHorizontalSpacing
+                        + spaceLeftOver / Math.max(numColumns - 1, 1);
+                break;
+            case STRETCH_SPACING_UNIFORM:
+                mColumnWidthCompat = requestedColumnWidth;
+                mHorizontalSpacingCompat = requestedHorizontalSpacing
+                        + (numColumns > 1 ? spaceLeftOver / (numColumns + 1) : spaceLeftOver);
+                break;
+            default:
+                // STRETCH_COLUMN_WIDTH, GridView's default
+                mColumnWidthCompat = Math.max(0, (availableSpace
+                        - (numColumns - 1) * requestedHorizontalSpacing) / numColumns);
+                mHorizontalSpacingCompat = requestedHorizontalSpacing;
+                break;
+        }
+    }
+
+    @Override
+    public void setOnScrollListener(OnScrollListener l) {
+        mClientScrollListener = l;
+    }
+
+    /**
+     * Sets how many rows ahead of a scroll get their cells bound while the UI
+     * thread is idle. The faster the scroll, the more of them are bound. The
+     * default is 0, prefetching is off.
+     * <p>
+     * NOTE: Prefetching needs the adapter to be wrapped, so turning it on
+     * takes effect with the next call to setAdapter. From then on
+     * {@link #getAdapter()} returns the wrapper adapter, as it does when
+     * the grid has header or footer views.
+     *
+     * @param rowCount the most rows to prefetch, or 0 to turn prefetching off
+     */
+    public void setPrefetchRowCount(int rowCount) {
+        if (rowCount < 0) {
+            throw new IllegalArgumentException("Row count must be 0 or more");
+        }
+        mPrefetcher.setRowCount(rowCount);
+    }
+
+    /**
+     * @return the most rows prefetched ahead of a scroll, 0 if prefetching is
+     *         off
+     */
+    public int getPrefetchRowCount() {
+        return mPrefetcher.getRowCount();
+    }
+
+    /**
+     * Sets how fast the grid has to fling for the cells of a
+     * {@link DeferredBindAdapter} to be bound fast. When the scroll gets
+     * slower or stops, the visible cells are bound fully. The default is a
+     * quarter of the maximum fling velocity.
+     *
+     * @param pixelsPerSecond the velocity, or 0 to always bind fully
+     */
+    public void setFastBindVelocity(int pixelsPerSecond) {
+        mFastBindVelocity = pixelsPerSecond;
+        if (pixelsPerSecond <= 0) {
+            setFastBinding(false);
+        }
+    }
+
+    public int getFastBindVelocity() {
+        return mFastBindVelocity;
+    }
+
+    /**
+     * @return whether the cells of a {@link DeferredBindAdapter} are bound
+     *         fast right now
+     */
+    boolean isFastBinding() {
+        return mFastBinding;
+    }
+
+    private void setFastBinding(boolean fastBinding) {
+        if (mFastBinding == fastBinding) {
+            return;
+        }
+        mFastBinding = fastBinding;
+        final ListAdapter adapter = getAdapter();
+        if (!fastBinding && adapter instanceof HeaderFooterViewGridAdapter) {
+            // The visible range has settled, finish what the fling left out
+            final HeaderFooterViewGridAdapter wrapper = (HeaderFooterViewGridAdapter) adapter;
+            final int firstPosition = getFirstVisiblePosition();
+            for (int i = getChildCount() - 1; i >= 0; i--) {
+                wrapper.completeBind(firstPosition + i, getChildAt(i));
+            }
+        }
+    }
+
+    /**
+     * Sets whether header and footer rows, and section headers, are drawn
+     * from a cache. A row is recorded into a layer once and the layer is
+     * drawn while the grid scrolls. The layer is recorded again only when
+     * the fixed view invalidates itself or its size changes. This suits
+     * large static banners; a fixed view that animates is recorded again on
+     * every frame and should not be cached. Disabled by default.
+     * <p>
+     * The layer is a texture in hardware accelerated windows and a bitmap
+     * otherwise. It takes memory for the full width of the row. Before
+     * Honeycomb, this has no effect.
+     */
+    public void setFixedViewCacheEnabled(boolean enabled) {
+        if (mFixedViewCacheEnabled != enabled) {
+            mFixedViewCacheEnabled = enabled;
+            updateFixedViewCache(mHeaderViewInfos);
+            updateFixedViewCache(mFooterViewInfos);
+            for (int i = getChildCount() - 1; i >= 0; i--) {
+                final View child = getChildAt(i);
+                if (child instanceof FullWidthFixedViewLayout) {
+                    ((FullWidthFixedViewLayout) child).updateCache();
+                }
+            }
+        }
+    }
+
+    public boolean isFixedViewCacheEnabled() {
+        return mFixedViewCacheEnabled;
+    }
+
+    /**
+     * Sets whether the grid collects {@link GridMetrics}: the cells it gets
+     * per view type and how many of them were converted, the placeholders
+     * created, its measure and layout passes, the data set changes of the
+     * adapter and a bind latency histogram per view type. Binds and layout
+     * passes also show up as sections in systrace. Disabled by default; the
+     * counters are dropped when disabled.
+     * <p>
+     * The cells are counted by the header and footer wrapper adapter, so
+     * the grid wraps its adapter while metrics are enabled. Enabling metrics
+     * on a grid whose adapter is not wrapped yet sets that adapter again,
+     * which scrolls the grid back to the top.
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        if (enabled == (mMetrics != null)) {
+            return;
+        }
+        mMetrics = enabled ? new GridMetrics() : null;
+        final ListAdapter adapter = getAdapter();
+        if (enabled && adapter != null && !(adapter instanceof HeaderFooterViewGridAdapter)) {
+            setAdapter(adapter == mSpanWrapper ? mSpanWrapper.getWrappedAdapter() : adapter);
+        }
+    }
+
+    public boolean isMetricsEnabled() {
+        return mMetrics != null;
+    }
+
+    /**
+     * @return the metrics collected since they were enabled or last reset,
+     *         or null if metrics are disabled
+     */
+    public GridMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    private static void updateFixedViewCache(ArrayList<FixedViewInfo> infos) {
+        for (int i = infos.size() - 1; i >= 0; i--) {
+            final ViewGroup container = infos.get(i).viewContainer;
+            if (container instanceof FullWidthFixedViewLayout) {
+                ((FullWidthFixedViewLayout) container).updateCache();
+            }
+        }
+    }
+
+    /**
+     * @return the pool that inflates the cells of this grid ahead of time,
+     *         for the adapter to take its new cells from. It is empty until
+     *         a cell layout is added to it.
+     */
+    public CellInflationPool getCellInflationPool() {
+        if (mCellInflationPool == null) {
+            mCellInflationPool = new CellInflationPool(this);
+        }
+        return mCellInflationPool;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mPrefetcher.stop();
+    }
+
+    @Override
+    public void setRecyclerListener(RecyclerListener listener) {
+        mClientRecyclerListener = listener;
+    }
+
+    /**
+     * Adds a listener told about recycled cells before the one set with
+     * {@link #setRecyclerListener(RecyclerListener)}.
+     */
+    void addCellRecyclerListener(RecyclerListener listener) {
+        mCellRecyclerListeners.add(listener);
+    }
+
+    void removeCellRecyclerListener(RecyclerListener listener) {
+        mCellRecyclerListeners.remove(listener);
+    }
+
+    /**
+     * Add a fixed view to appear at the top of the grid. If addHeaderView is
+     * called more than once, the views will appear in the order they were
+     * added. Views added using this call can take focus if they want.
+     * <p>
+     * NOTE: Call this before calling setAdapter. This is so the grid can wrap
+     * the supplied cursor with one that will also account for header views.
+     *
+     * @param v The view to add.
+     * @param data Data to associate with this view
+     * @param isSelectable whether the item is selectable
+     */
+    public void addHeaderView(View v, Object data, boolean isSelectable) {
+        addFixedView(v, data, isSelectable, mHeaderViewInfos);
+    }
+
+    /**
+     * Add a fixed view to appear at the top of the grid. If addHeaderView is
+     * called more than once, the views will appear in the order they were
+     * added. Views added using this call can take focus if they want.
+     * <p>
+     * NOTE: Call this before calling setAdapter. This is so the grid can wrap
+     * the supplied cursor with one that will also account for header views.
+     *
+     * @param v The view to add.
+     */
+    public void addHeaderView(View v) {
+        addHeaderView(v, null, true);
+    }
+
+    /**
+     * Add a fixed view to appear at the bottom of the grid, on a row of its
+     * own after the last item. If addFooterView is called more than once, the
+     * views will appear in the order they were added. Views added using this
+     * call can take focus if they want.
+     * <p>
+     * NOTE: Call this before calling setAdapter. This is so the grid can wrap
+     * the supplied cursor with one that will also account for footer views.
+     *
+     * @param v The view to add.
+     * @param data Data to associate with this view
+     * @param isSelectable whether the item is selectable
+     */
+    public void addFooterView(View v, Object data, boolean isSelectable) {
+        addFixedView(v, data, isSelectable, mFooterViewInfos);
+    }
+
+    /**
+     * Add a fixed view to appear at the bottom of the grid, on a row of its
+     * own after the last item. If addFooterView is called more than once, the
+     * views will appear in the order they were added. Views added using this
+     * call can take focus if they want.
+     * <p>
+     * NOTE: Call this before calling setAdapter. This is so the grid can wrap
+     * the supplied cursor with one that will also account for footer views.
+     *
+     * @param v The view to add.
+     */
+    public void addFooterView(View v) {
+        addFooterView(v, null, true);
+    }
+
+    private void addFixedView(View v, Object data, boolean isSelectable,
+            ArrayList<FixedViewInfo> where) {
+        ListAdapter adapter = getAdapter();
+
+        if (adapter != null && ! (adapter instanceof HeaderFooterViewGridAdapter)) {
+            throw new IllegalStateException(
+                    "Cannot add fixed view to grid -- setAdapter has already been called.");
+        }
+
+        FixedViewInfo info = new FixedViewInfo();
+        FrameLayout fl = createFixedViewContainer();
+        fl.addView(v);
+        info.view = v;
+        info.viewContainer = fl;
+        info.data = data;
+        info.isSelectable = isSelectable;
+        info.serial = mNextFixedViewSerial++;
+        where.add(info);
+
+        // in the case of re-adding a fixed view, or adding one later on,
+        // we need to notify the observer
+        if (adapter != null) {
+            ((HeaderFooterViewGridAdapter) adapter).notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Add several fixed views to appear at the top of the grid, in order.
+     * The grid is notified once for all of them.
+     *
+     * @param views The views to add.
+     */
+    public void addHeaderViews(List<View> views) {
+        beginBatchUpdate();
+        try {
+            for (View v : views) {
+                addHeaderView(v);
+            }
+        } finally {
+            commitBatchUpdate();
+        }
+    }
+
+    /**
+     * Add several fixed views to appear at the bottom of the grid, in order.
+     * The grid is notified once for all of them.
+     *
+     * @param views The views to add.
+     */
+    public void addFooterViews(List<View> views) {
+        beginBatchUpdate();
+        try {
+            for (View v : views) {
+                addFooterView(v);
+            }
+        } finally {
+            commitBatchUpdate();
+        }
+    }
+
+    /**
+     * Starts a batch of changes to the header views, footer views or number
+     * of columns. The grid is not told about any of them until the matching
+     * {@link #commitBatchUpdate()}, and then only once. Batches can be nested.
+     * <p>
+     * Even outside of a batch, such changes are folded into at most one
+     * notification per frame.
+     */
+    public void beginBatchUpdate() {
+        mBatchUpdateDepth++;
+    }
+
+    /**
+     * Ends a batch started with {@link #beginBatchUpdate()}. Ending the
+     * outermost batch notifies the grid, on the next frame at the latest,
+     * if anything changed.
+     */
+    public void commitBatchUpdate() {
+        if (mBatchUpdateDepth == 0) {
+            throw new IllegalStateException("commitBatchUpdate() without beginBatchUpdate()");
+        }
+        if (--mBatchUpdateDepth == 0) {
+            onBatchCommitted();
+        }
+    }
+
+    boolean isInBatchUpdate() {
+        return mBatchUpdateDepth > 0;
+    }
+
+    void onBatchCommitted() {
+        if (mSpanWrapper != null) {
+            mSpanWrapper.onBatchCommitted();
+        }
+        ListAdapter adapter = getAdapter();
+        if (adapter instanceof HeaderFooterViewGridAdapter) {
+            ((HeaderFooterViewGridAdapter) adapter).onBatchCommitted();
+        }
+    }
+
+    public int getHeaderViewCount() {
+        return mHeaderViewInfos.size();
+    }
+
+    public int getFooterViewCount() {
+        return mFooterViewInfos.size();
+    }
+
+    /**
+     * Removes a previously-added header view.
+     *
+     * @param v The view to remove
+     * @return true if the view was removed, false if the view was not a header
+     *         view
+     */
+    public boolean removeHeaderView(View v) {
+        if (mHeaderViewInfos.size() > 0) {
+            boolean result = false;
+            ListAdapter adapter = getAdapter();
+            if (adapter instanceof HeaderFooterViewGridAdapter
+                    && ((HeaderFooterViewGridAdapter) adapter).removeHeader(v)) {
+                result = true;
+            }
+            removeFixedViewInfo(v, mHeaderViewInfos);
+            return result;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a previously-added footer view.
+     *
+     * @param v The view to remove
+     * @return true if the view was removed, false if the view was not a footer
+     *         view
+     */
+    public boolean removeFooterView(View v) {
+        if (mFooterViewInfos.size() > 0) {
+            boolean result = false;
+            ListAdapter adapter = getAdapter();
+            if (adapter instanceof HeaderFooterViewGridAdapter
+                    && ((HeaderFooterViewGridAdapter) adapter).removeFooter(v)) {
+                result = true;
+            }
+            removeFixedViewInfo(v, mFooterViewInfos);
+            return result;
+        }
+        return false;
+    }
+
+    private void removeFixedViewInfo(View v, ArrayList<FixedViewInfo> where) {
+        int len = where.size();
+        for (int i = 0; i < len; ++i) {
+            FixedViewInfo info = where.get(i);
+            if (info.view == v) {
+                where.remove(i);
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void setAdapter(ListAdapter adapter) {
+        clearPendingRangeUpdates();
+        mPrefetcher.stop();
+        ListAdapter gridAdapter = adapter;
+        if (adapter instanceof ColumnSpanAdapter) {
+            mSpanWrapper = new SpannedGridWrapperAdapter(this, adapter);
+            int numColumns = getNumColumnsCompat();
+            if (numColumns > 1) {
+                mSpanWrapper.setNumColumns(numColumns);
+                mSpanWrapper.flushPendingChanges();
+            }
+            gridAdapter = mSpanWrapper;
+        } else {
+            mSpanWrapper = null;
+        }
+        if (mHeaderViewInfos.size() > 0 || mFooterViewInfos.size() > 0
+                || adapter instanceof BaseGridAdapter || adapter instanceof DeferredBindAdapter
+                || (adapter != null && mPrefetcher.getRowCount() > 0)
+                || (adapter != null && mMetrics != null)) {
+            HeaderFooterViewGridAdapter hadapter = new HeaderFooterViewGridAdapter(
+                    this, mHeaderViewInfos, mFooterViewInfos, gridAdapter);
+            int numColumns = getNumColumnsCompat();
+            if (numColumns > 1) {
+                hadapter.setNumColumns(numColumns);
+                // Nobody observes the new adapter yet, so there is nothing to coalesce
+                hadapter.flushPendingChanges();
+            }
+            mAttachingAdapter = true;
+            try {
+                super.setAdapter(hadapter);
+            } finally {
+                mAttachingAdapter = false;
+            }
+        } else {
+            super.setAdapter(gridAdapter);
+        }
+    }
+
+    /**
+     * @return whether the observer registered on the wrapper adapter right
+     *         now is the one of AbsListView
+     */
+    boolean isAttachingAdapter() {
+        return mAttachingAdapter;
+    }
+
+    /**
+     * @return the observer to register in place of AbsListView's own
+     */
+    GridDataSetObserver createRangeObserver(DataSetObserver listObserver) {
+        return new RangeObserver(listObserver);
+    }
+
+    @Override
+    protected void layoutChildren() {
+        final GridMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.onLayout();
+            GridMetrics.beginSection(GridMetrics.TRACE_LAYOUT);
+        }
+        try {
+            applyPendingRangeUpdates();
+            super.layoutChildren();
+            alignWideCells();
+            mFullChangePending = false;
+        } finally {
+            if (metrics != null) {
+                GridMetrics.endSection();
+            }
+        }
+    }
+
+    /**
+     * Moves the cells wider than a column into place: the full-width
+     * containers to the left edge of the row, and the cells of a
+     * {@link ColumnSpanAdapter} over the columns they cover. GridView lays
+     * out or offsets every cell in its own column, and ViewGroup does not
+     * let the cells lay themselves out elsewhere. This runs after each layout
+     * pass and after each scroll, which is when GridView adds rows;
+     * offsetting a cell that is in place does nothing. Since the grid clips
+     * its children, a wide cell drawn before this ran would be cut down to
+     * its column.
+     */
+    private void alignWideCells() {
+        final int left = getPaddingLeft();
+        final boolean rtl = ViewCompat.getLayoutDirection(this) == ViewCompat.LAYOUT_DIRECTION_RTL;
+        final int childCount = getChildCount();
+        for (int i = childCount - 1; i >= 0; i--) {
+            final View child = getChildAt(i);
+            if (child instanceof FullWidthFixedViewLayout) {
+                ((FullWidthFixedViewLayout) child).updateCache();
+                if (child.getLeft() != left) {
+                    child.offsetLeftAndRight(left - child.getLeft());
+                }
+            } else if (child instanceof SpannedGridWrapperAdapter.SpanCellLayout) {
+                final int span = ((SpannedGridWrapperAdapter.SpanCellLayout) child).getSpan();
+                // The placeholder of the last column covered, towards the left in RTL
+                final int last = i + span - 1;
+                if (last > i && last < childCount) {
+                    final View end = getChildAt(last);
+                    final int offset = rtl ? end.getLeft() - child.getLeft()
+                            : end.getRight() - child.getRight();
+                    if (offset != 0) {
+                        child.offsetLeftAndRight(offset);
+                    }
+                }
+            }
+        }
+    }
+
+    private void clearPendingRangeUpdates() {
+        mPendingRangeObserver = null;
+        mChangedStart = Integer.MAX_VALUE;
+        mChangedEnd = -1;
+        mShiftedStart = Integer.MAX_VALUE;
+    }
+
+    private void applyPendingRangeUpdates() {
+        final RangeObserver observer = mPendingRangeObserver;
+        if (observer == null) {
+            return;
+        }
+        final boolean rebound = rebindVisibleCells(mChangedStart, mChangedEnd, mShiftedStart);
+        clearPendingRangeUpdates();
+        if (!rebound) {
+            // Let AbsListView start over, as after notifyDataSetChanged()
+            observer.onChanged();
+        }
+    }
+
+    /**
+     * Rebinds the visible cells covered by the pending range notifications
+     * to their current position, in place. The layout pass that follows
+     * keeps them as they are if they have the same size.
+     * <p>
+     * From the first row with a cell that cannot be rebound, e.g. because
+     * it now holds a view of another type or a footer, the children are
+     * removed instead, and the layout pass obtains them again. So is the
+     * row completed by fillers, whose height follows its items.
+     *
+     * @return false if the grid has to rebind all the cells
+     */
+    private boolean rebindVisibleCells(int changedStart, int changedEnd, int shiftedStart) {
+        final ListAdapter adapter = getAdapter();
+        if (!(adapter instanceof HeaderFooterViewGridAdapter)) {
+            return false;
+        }
+        final HeaderFooterViewGridAdapter wrapper = (HeaderFooterViewGridAdapter) adapter;
+        final int firstPosition = getFirstVisiblePosition();
+        final int count = wrapper.getCount();
+        if (shiftedStart < firstPosition || count <= firstPosition) {
+            // Cells above the visible ones moved, the scroll position is lost
+            return false;
+        }
+        final int numColumns = Math.max(mNumColsCompat, 1);
+        final int childCount = getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            final int position = firstPosition + i;
+            if (position < shiftedStart && (position < changedStart || position >= changedEnd)) {
+                continue;
+            }
+            if (position >= count) {
+                // Past the end now, the layout pass drops it
+                break;
+            }
+            if (wrapper.isInFillerRow(position)
+                    || !rebindChild(wrapper, getChildAt(i), position)) {
+                return removeChildrenFrom(i - position % numColumns);
+            }
+        }
+        return true;
+    }
+
+    private boolean removeChildrenFrom(int index) {
+        if (index <= 0) {
+            // The grid keeps its scroll position from the first child
+            return false;
+        }
+        removeViewsInLayout(index, getChildCount() - index);
+        return true;
+    }
+
+    private boolean rebindChild(ListAdapter adapter, View child, int position) {
+        final Object viewType = child.getTag(R.id.grid_cell_view_type);
+        if (!(viewType instanceof Integer)
+                || (Integer) viewType != adapter.getItemViewType(position)
+                || adapter.getView(position, child, this) != child) {
+            return false;
+        }
+        // The layout pass measures a kept child again only when it asks for it
+        child.forceLayout();
+        return true;
+    }
+
+    /**
+     * Stands in for the observer AbsListView registers on the wrapper
+     * adapter. Full changes go through to it right away, range changes are
+     * recorded and applied at the start of the next layout pass.
+     */
+    private class RangeObserver extends GridDataSetObserver {
+        private final DataSetObserver mListObserver;
+
+        RangeObserver(DataSetObserver listObserver) {
+            mListObserver = listObserver;
+        }
+
+        @Override
+        public void onChanged() {
+            if (mMetrics != null) {
+                mMetrics.onDataSetChanged();
+            }
+            clearPendingRangeUpdates();
+            mFullChangePending = true;
+            mListObserver.onChanged();
+        }
+
+        @Override
+        public void onInvalidated() {
+            clearPendingRangeUpdates();
+            mFullChangePending = true;
+            mListObserver.onInvalidated();
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            if (mMetrics != null) {
+                mMetrics.onRangeChanged();
+            }
+            if (!mFullChangePending) {
+                mChangedStart = Math.min(mChangedStart, positionStart);
+                mChangedEnd = Math.max(mChangedEnd, positionStart + itemCount);
+                onRangeRecorded();
+            }
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            onItemRangeShifted(positionStart);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            onItemRangeShifted(positionStart);
+        }
+
+        private void onItemRangeShifted(int positionStart) {
+            if (mMetrics != null) {
+                mMetrics.onRangeChanged();
+            }
+            if (!mFullChangePending) {
+                mShiftedStart = Math.min(mShiftedStart, positionStart);
+                onRangeRecorded();
+            }
+        }
+
+        private void onRangeRecorded() {
+            mPendingRangeObserver = this;
+            // Measuring picks up the new item count
+            requestLayout();
+        }
+    }
+
+    /**
+     * @return a container that lays its child out over the full width of
+     *         the grid, even though the grid gives it a single column
+     */
+    FrameLayout createFixedViewContainer() {
+        final FullWidthFixedViewLayout container = new FullWidthFixedViewLayout(getContext());
+        container.updateCache();
+        return container;
+    }
+
+    /**
+     * Full-width rows are measured over the whole row here, and the grid
+     * moves them from the column offset GridView picks, which is shifted by
+     * STRETCH_SPACING_UNIFORM and sits at the right edge in right-to-left
+     * layouts, to the left edge of the row with {@link #alignWideCells()}.
+     * The other columns of the row are {@link PlaceholderView}s that cost
+     * next to nothing. The bounds of the container cover the whole row, so
+     * the grid can keep clipping its children to their bounds.
+     * <p>
+     * A single child without gravity, the usual header or footer, is measured
+     * and laid out here directly instead of going through FrameLayout. Its
+     * size is kept per width and height spec, so the grid measuring the row
+     * again while scrolling does not measure the child until it asks for a
+     * layout or the grid width changes.
+     */
+    private class FullWidthFixedViewLayout extends FrameLayout {
+        private View mMeasuredChild;
+        private int mMeasuredWidth;
+        private int mMeasuredHeightSpec;
+        private int mMeasuredHeight;
+        private boolean mCached;
+
+        public FullWidthFixedViewLayout(Context context) {
+            super(context);
+        }
+
+        /**
+         * Draws through a layer or not, following the grid. Section header
+         * containers recycled while the setting changed catch up when they
+         * are laid out again.
+         */
+        void updateCache() {
+            final boolean cached = mFixedViewCacheEnabled;
+            if (mCached != cached) {
+                mCached = cached;
+                ViewCompat.setLayerType(this, cached
+                        ? ViewCompat.LAYER_TYPE_HARDWARE : ViewCompat.LAYER_TYPE_NONE, null);
+            }
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            int targetWidth = HeaderFooterGridView.this.getMeasuredWidth()
+                    - HeaderFooterGridView.this.getPaddingLeft()
+                    - HeaderFooterGridView.this.getPaddingRight();
+            final View child = getDirectChild();
+            if (child == null) {
+                mMeasuredChild = null;
+                widthMeasureSpec = MeasureSpec.makeMeasureSpec(targetWidth,
+                        MeasureSpec.getMode(widthMeasureSpec));
+                super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+                return;
+            }
+            if (child != mMeasuredChild || targetWidth != mMeasuredWidth
+                    || heightMeasureSpec != mMeasuredHeightSpec || child.isLayoutRequested()) {
+                final FrameLayout.LayoutParams lp =
+                        (FrameLayout.LayoutParams) child.getLayoutParams();
+                final int horizontalPadding = getPaddingLeft() + getPaddingRight()
+                        + lp.leftMargin + lp.rightMargin;
+                final int verticalPadding = getPaddingTop() + getPaddingBottom()
+                        + lp.topMargin + lp.bottomMargin;
+                child.measure(
+                        getChildMeasureSpec(
+                                MeasureSpec.makeMeasureSpec(targetWidth, MeasureSpec.EXACTLY),
+                                horizontalPadding, lp.width),
+                        getChildMeasureSpec(heightMeasureSpec, verticalPadding, lp.height));
+                mMeasuredChild = child;
+                mMeasuredWidth = targetWidth;
+                mMeasuredHeightSpec = heightMeasureSpec;
+                mMeasuredHeight = resolveSize(child.getMeasuredHeight() + verticalPadding,
+                        heightMeasureSpec);
+            }
+            setMeasuredDimension(targetWidth, mMeasuredHeight);
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int l, int t, int r, int b) {
+            final View child = getDirectChild();
+            if (child == null || child != mMeasuredChild) {
+                super.onLayout(changed, l, t, r, b);
+                return;
+            }
+            final FrameLayout.LayoutParams lp =
+                    (FrameLayout.LayoutParams) child.getLayoutParams();
+            final int left = getPaddingLeft() + lp.leftMargin;
+            final int top = getPaddingTop() + lp.topMargin;
+            child.layout(left, top, left + child.getMeasuredWidth(),
+                    top + child.getMeasuredHeight());
+        }
+
+        /**
+         * @return the only child when it can be measured without FrameLayout,
+         *         or null
+         */
+        private View getDirectChild() {
+            if (getChildCount() != 1) {
+                return null;
+            }
+            final View child = getChildAt(0);
+            final ViewGroup.LayoutParams lp = child.getLayoutParams();
+            if (child.getVisibility() == GONE || !(lp instanceof FrameLayout.LayoutParams)
+                    || ((FrameLayout.LayoutParams) lp).gravity != -1) {
+                return null;
+            }
+            return child;
+        }
+    }
+}
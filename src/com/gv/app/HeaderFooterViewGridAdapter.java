@@ -0,0 +1,673 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.database.DataSetObserver;
+import android.util.SparseArray;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.ListAdapter;
+import android.widget.WrapperListAdapter;
+
+import com.gv.app.HeaderFooterGridView.FixedViewInfo;
+
+import java.util.ArrayList;
+
+/**
+ * ListAdapter used when a {@link HeaderFooterGridView} has header or footer
+ * views. This ListAdapter wraps another one and also keeps track of the fixed
+ * views and their associated data objects.
+ * <p>
+ * Positions are resolved through a {@link GridPositionMap} that is rebuilt
+ * only when the wrapped adapter, the fixed views or the number of columns
+ * change, so the per-position calls made while scrolling do not query the
+ * wrapped adapter's count.
+ * <p>
+ * Changes of the fixed views or the number of columns are folded into at
+ * most one notification per frame by a {@link CoalescedNotifier}. Until it
+ * is sent the adapter keeps answering from the snapshot of fixed views taken
+ * at the last rebuild, so the grid never sees a count it was not told about.
+ * <p>
+ * Range notifications of a {@link BaseGridAdapter} are passed on in grid
+ * positions, so the grid can rebind only the cells they cover. Every cell
+ * handed out is tagged with its view type for that purpose.
+ * <p>
+ * Item cells bound ahead of time by the {@link GridPrefetcher} are parked
+ * here by grid position, and handed out in place of binding the convertView
+ * when the grid gets to that position.
+ *<p>This is intended as a base class; you will probably not need to
+ * use this class directly in your own code.
+ */
+class HeaderFooterViewGridAdapter implements WrapperListAdapter, Filterable {
+
+    // This is used to notify the container of updates relating to number of columns
+    // or fixed views changing, which changes the number of placeholders needed
+    private final GridDataSetObservable mDataSetObservable = new GridDataSetObservable();
+
+    // Rebuilds the position map before passing on changes of the wrapped adapter,
+    // so observers never see a stale map
+    private final DataSetObserver mAdapterObserver = new GridDataSetObserver() {
+        @Override
+        public void onChanged() {
+            // This also covers any pending change of our own
+            mNotifier.cancel();
+            rebuildPositionMap();
+            mDataSetObservable.notifyChanged();
+        }
+
+        @Override
+        public void onInvalidated() {
+            mNotifier.cancel();
+            rebuildPositionMap();
+            mDataSetObservable.notifyInvalidated();
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            discardPrefetchedViews();
+            // Nothing moved, so the map still holds
+            mDataSetObservable.notifyItemRangeChanged(getGridPosition(positionStart), itemCount);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            if (mNotifier.cancel()) {
+                // A range cannot describe the pending change of our own as well
+                onChanged();
+                return;
+            }
+            rebuildPositionMap();
+            mDataSetObservable.notifyItemRangeInserted(getGridPosition(positionStart), itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            if (mNotifier.cancel()) {
+                onChanged();
+                return;
+            }
+            rebuildPositionMap();
+            mDataSetObservable.notifyItemRangeRemoved(getGridPosition(positionStart), itemCount);
+        }
+    };
+
+    private final CoalescedNotifier mNotifier;
+    private final HeaderFooterGridView mGrid;
+
+    // The observer the grid registered, and the one registered in its place
+    private DataSetObserver mListObserver;
+    private DataSetObserver mListObserverProxy;
+
+    private final ListAdapter mAdapter;
+    private final GridPositionMap mPositionMap = new GridPositionMap();
+
+    // The wrapped adapter and the fixed views, for the position map to resolve against
+    private final GridPositionMap.Cells mCells = new GridPositionMap.Cells() {
+        @Override
+        public boolean isItemEnabled(int adapterPosition) {
+            return mAdapter.isEnabled(adapterPosition);
+        }
+
+        @Override
+        public Object getItem(int adapterPosition) {
+            return mAdapter.getItem(adapterPosition);
+        }
+
+        @Override
+        public long getItemId(int adapterPosition) {
+            return mAdapter.getItemId(adapterPosition);
+        }
+
+        @Override
+        public int getItemViewType(int adapterPosition) {
+            return mAdapter.getItemViewType(adapterPosition);
+        }
+
+        @Override
+        public int getPlaceholderViewType() {
+            // Placeholders get the last view type number
+            return mAdapter != null ? mAdapter.getViewTypeCount() : 1;
+        }
+
+        @Override
+        public boolean isFixedViewSelectable(int segment, int index) {
+            return getFixedViewAt(segment, index).isSelectable;
+        }
+
+        @Override
+        public Object getFixedViewData(int segment, int index) {
+            return getFixedViewAt(segment, index).data;
+        }
+
+        @Override
+        public int getFixedViewSerial(int segment, int index) {
+            return getFixedViewAt(segment, index).serial;
+        }
+    };
+    private int mNumColumns = 1;
+    private int mObserverCount;
+
+    // These ArrayLists are assumed to NOT be null. They are shared with the
+    // grid, which adds to them right away.
+    ArrayList<FixedViewInfo> mHeaderViewInfos;
+    ArrayList<FixedViewInfo> mFooterViewInfos;
+
+    // What the position map was built from
+    private FixedViewInfo[] mHeaders;
+    private FixedViewInfo[] mFooters;
+
+    boolean mAreAllFixedViewsSelectable;
+
+    private final boolean mIsFilterable;
+    private final boolean mIsDeferredBind;
+
+    private final RowHeightCache mRowHeights = new RowHeightCache();
+
+    // The visible items last told to a GridVisibleRangeListener
+    private int mVisibleFirst = -1;
+    private int mVisibleLast = -1;
+
+    // Cells bound by the prefetcher, by grid position
+    private final SparseArray<View> mPrefetchedViews = new SparseArray<View>();
+    // Cells to bind the next prefetched ones into, by view type
+    private final SparseArray<ArrayList<View>> mSpareViews = new SparseArray<ArrayList<View>>();
+
+    public HeaderFooterViewGridAdapter(HeaderFooterGridView grid,
+            ArrayList<FixedViewInfo> headerViewInfos,
+            ArrayList<FixedViewInfo> footerViewInfos, ListAdapter adapter) {
+        mGrid = grid;
+        mNotifier = new CoalescedNotifier(grid, new Runnable() {
+            @Override
+            public void run() {
+                dispatchFixedViewChanges();
+            }
+        });
+        mAdapter = adapter;
+        mIsFilterable = adapter instanceof Filterable;
+        mIsDeferredBind = adapter instanceof DeferredBindAdapter;
+
+        if (headerViewInfos == null) {
+            throw new IllegalArgumentException("headerViewInfos cannot be null");
+        }
+        if (footerViewInfos == null) {
+            throw new IllegalArgumentException("footerViewInfos cannot be null");
+        }
+        mHeaderViewInfos = headerViewInfos;
+        mFooterViewInfos = footerViewInfos;
+
+        rebuildPositionMap();
+    }
+
+    public int getHeadersCount() {
+        return mHeaders.length;
+    }
+
+    public int getFootersCount() {
+        return mFooters.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (mAdapter == null || mAdapter.isEmpty())
+                && getHeadersCount() == 0 && getFootersCount() == 0;
+    }
+
+    public void setNumColumns(int numColumns) {
+        if (numColumns < 1) {
+            throw new IllegalArgumentException("Number of columns must be 1 or more");
+        }
+        if (mNumColumns != numColumns) {
+            mNumColumns = numColumns;
+            notifyDataSetChanged();
+        }
+    }
+
+    private void rebuildPositionMap() {
+        mHeaders = mHeaderViewInfos.toArray(new FixedViewInfo[mHeaderViewInfos.size()]);
+        mFooters = mFooterViewInfos.toArray(new FixedViewInfo[mFooterViewInfos.size()]);
+        mAreAllFixedViewsSelectable = areAllListInfosSelectable(mHeaderViewInfos)
+                && areAllListInfosSelectable(mFooterViewInfos);
+
+        mRowHeights.invalidate();
+        discardPrefetchedViews();
+        mPositionMap.rebuild(getHeadersCount(),
+                mAdapter != null ? mAdapter.getCount() : 0,
+                getFootersCount(), mNumColumns);
+    }
+
+    /**
+     * Rebuilds the position map after the fixed views or the number of
+     * columns changed, and tells the observers. When only footers changed,
+     * everything before them stays where it was, which a range can tell.
+     */
+    private void dispatchFixedViewChanges() {
+        final GridPositionMap map = mPositionMap;
+        final boolean onlyFootersChanged = map.getNumColumns() == mNumColumns
+                && isSnapshotOf(mHeaders, mHeaderViewInfos);
+        final int oldCount = map.getCount();
+        final int footerRowsStart = map.getSegmentEnd(GridPositionMap.SEGMENT_ITEM);
+        rebuildPositionMap();
+        if (!onlyFootersChanged) {
+            mDataSetObservable.notifyChanged();
+            return;
+        }
+        final int count = map.getCount();
+        if (count > oldCount) {
+            mDataSetObservable.notifyItemRangeInserted(footerRowsStart, count - oldCount);
+        } else if (count < oldCount) {
+            mDataSetObservable.notifyItemRangeRemoved(footerRowsStart, oldCount - count);
+        } else {
+            // Footers were replaced by as many others
+            mDataSetObservable.notifyItemRangeChanged(footerRowsStart, count - footerRowsStart);
+        }
+    }
+
+    private static boolean isSnapshotOf(FixedViewInfo[] snapshot, ArrayList<FixedViewInfo> infos) {
+        if (snapshot.length != infos.size()) {
+            return false;
+        }
+        for (int i = 0; i < snapshot.length; i++) {
+            if (snapshot[i] != infos.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean areAllListInfosSelectable(ArrayList<FixedViewInfo> infos) {
+        if (infos != null) {
+            for (FixedViewInfo info : infos) {
+                if (!info.isSelectable) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public boolean removeHeader(View v) {
+        return removeFixedView(v, mHeaderViewInfos);
+    }
+
+    public boolean removeFooter(View v) {
+        return removeFixedView(v, mFooterViewInfos);
+    }
+
+    private boolean removeFixedView(View v, ArrayList<FixedViewInfo> where) {
+        for (int i = 0; i < where.size(); i++) {
+            FixedViewInfo info = where.get(i);
+            if (info.view == v) {
+                where.remove(i);
+
+                notifyDataSetChanged();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public int getCount() {
+        return mPositionMap.getCount();
+    }
+
+    @Override
+    public boolean areAllItemsEnabled() {
+        if (mAdapter != null) {
+            return mAreAllFixedViewsSelectable && mAdapter.areAllItemsEnabled();
+        } else {
+            return true;
+        }
+    }
+
+    /**
+     * @return the position in the wrapped adapter of a grid position, or -1
+     *         if the position is a fixed view, placeholder or out of range
+     */
+    public int getAdapterPosition(int position) {
+        final GridPositionMap map = mPositionMap;
+        if (position >= 0 && position < map.getCount()
+                && map.getSegment(position) == GridPositionMap.SEGMENT_ITEM) {
+            return map.getAdapterPosition(position);
+        }
+        return -1;
+    }
+
+    /**
+     * @return the grid position of a position in the wrapped adapter
+     */
+    public int getGridPosition(int adapterPosition) {
+        return mPositionMap.getGridPosition(adapterPosition);
+    }
+
+    /**
+     * @return whether the position is in the last row of items and that row
+     *         is completed by fillers, whose height follows the items
+     */
+    boolean isInFillerRow(int position) {
+        final GridPositionMap map = mPositionMap;
+        final int fillerStart = map.getSegmentStart(GridPositionMap.SEGMENT_FILLER);
+        return fillerStart < map.getSegmentEnd(GridPositionMap.SEGMENT_FILLER)
+                && map.getRow(position) == map.getRow(fillerStart);
+    }
+
+    private FixedViewInfo getFixedViewInfo(int position, int segment) {
+        return getFixedViewAt(segment, mPositionMap.getFixedIndex(position, segment));
+    }
+
+    private FixedViewInfo getFixedViewAt(int segment, int index) {
+        return segment == GridPositionMap.SEGMENT_HEADER ? mHeaders[index] : mFooters[index];
+    }
+
+    @Override
+    public boolean isEnabled(int position) {
+        // Out of range positions will throw an ArrayIndexOutOfBoundsException
+        return mPositionMap.isEnabled(position, mCells);
+    }
+
+    @Override
+    public Object getItem(int position) {
+        // Out of range positions will throw an ArrayIndexOutOfBoundsException
+        return mPositionMap.getItem(position, mCells);
+    }
+
+    /**
+     * Items get the ids of the wrapped adapter. The cells of header and
+     * footer rows, and the fillers, get ids of their own that follow the
+     * fixed view and the column, so they keep them when items or other
+     * fixed views are added or removed. Those ids are taken from a range
+     * at the bottom of the long values that item ids are assumed to stay
+     * out of, see {@link GridPositionMap#FIXED_ID_START}.
+     */
+    @Override
+    public long getItemId(int position) {
+        return mPositionMap.getItemId(position, mCells);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        // The ids of the fixed views are stable, so it is up to the items
+        if (mAdapter != null) {
+            return mAdapter.hasStableIds();
+        }
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        final GridMetrics metrics = mGrid != null ? mGrid.getMetrics() : null;
+        if (metrics != null) {
+            return getViewWithMetrics(metrics, position, convertView, parent);
+        }
+        final View view = obtainView(position, convertView, parent);
+        // Lets the grid tell whether the cell can be rebound in place
+        view.setTag(R.id.grid_cell_view_type, getItemViewType(position));
+        return view;
+    }
+
+    private View getViewWithMetrics(GridMetrics metrics, int position, View convertView,
+            ViewGroup parent) {
+        final int viewType = getItemViewType(position);
+        GridMetrics.beginSection(GridMetrics.TRACE_BIND);
+        final long start = System.nanoTime();
+        final View view;
+        try {
+            view = obtainView(position, convertView, parent);
+        } finally {
+            GridMetrics.endSection();
+        }
+        metrics.onBind(viewType, view == convertView, System.nanoTime() - start);
+        view.setTag(R.id.grid_cell_view_type, viewType);
+        return view;
+    }
+
+    private View obtainView(int position, View convertView, ViewGroup parent) {
+        // Out of range positions will throw an ArrayIndexOutOfBoundsException
+        final GridPositionMap map = mPositionMap;
+        final int segment = map.getSegment(position);
+        if (segment == GridPositionMap.SEGMENT_ITEM) {
+            View normalView = mPrefetchedViews.get(position);
+            if (normalView != null) {
+                // The grid puts the unused convertView back into its scrap heap
+                mPrefetchedViews.remove(position);
+            } else if (mIsDeferredBind) {
+                final boolean fast = mGrid != null && mGrid.isFastBinding();
+                normalView = fast
+                        ? ((DeferredBindAdapter) mAdapter).getFastView(
+                                map.getAdapterPosition(position), convertView, parent)
+                        : mAdapter.getView(map.getAdapterPosition(position),
+                                convertView, parent);
+                normalView.setTag(R.id.grid_cell_fast_bound, fast ? Boolean.TRUE : null);
+            } else {
+                normalView = mAdapter.getView(map.getAdapterPosition(position),
+                        convertView, parent);
+            }
+            mRowHeights.onCellObtained(map.getRow(position),
+                    position % map.getNumColumns() == 0, normalView);
+            return normalView;
+        }
+
+        if (map.isFixedView(position, segment)) {
+            return getFixedViewInfo(position, segment).viewContainer;
+        }
+
+        PlaceholderView placeholder = (PlaceholderView) convertView;
+        if (placeholder == null) {
+            placeholder = new PlaceholderView(parent.getContext());
+            if (mGrid != null && mGrid.getMetrics() != null) {
+                mGrid.getMetrics().onPlaceholderAllocated();
+            }
+        }
+        // We need to do this because GridView uses the height of the last item
+        // in a row to determine the height for the entire row.
+        final int numColumns = map.getNumColumns();
+        if (position % numColumns != numColumns - 1) {
+            placeholder.setRowHeight(0);
+        } else if (segment == GridPositionMap.SEGMENT_FILLER) {
+            placeholder.setRowHeight(mRowHeights.getRowHeight(map.getRow(position)));
+        } else {
+            // The fixed view was measured just before, in the same row
+            placeholder.setRowHeight(getFixedViewInfo(position, segment)
+                    .viewContainer.getMeasuredHeight());
+        }
+        return placeholder;
+    }
+
+    /**
+     * Completes the binding of a cell the grid shows at a position, if it
+     * was bound fast. Fixed views and placeholders never are.
+     */
+    void completeBind(int position, View view) {
+        if (view.getTag(R.id.grid_cell_fast_bound) != null) {
+            view.setTag(R.id.grid_cell_fast_bound, null);
+            ((DeferredBindAdapter) mAdapter).bindFull(getAdapterPosition(position), view);
+        }
+    }
+
+    /**
+     * Tells a wrapped {@link GridVisibleRangeListener} which of its items are
+     * visible, given the visible grid positions.
+     */
+    void onVisibleRangeChanged(int firstPosition, int lastPosition) {
+        if (!(mAdapter instanceof GridVisibleRangeListener)) {
+            return;
+        }
+        final GridPositionMap map = mPositionMap;
+        final int first = Math.max(firstPosition,
+                map.getSegmentStart(GridPositionMap.SEGMENT_ITEM));
+        final int last = Math.min(lastPosition,
+                map.getSegmentEnd(GridPositionMap.SEGMENT_ITEM) - 1);
+        int adapterFirst = -1;
+        int adapterLast = -1;
+        if (first <= last) {
+            adapterFirst = map.getAdapterPosition(first);
+            adapterLast = map.getAdapterPosition(last);
+        }
+        if (adapterFirst != mVisibleFirst || adapterLast != mVisibleLast) {
+            mVisibleFirst = adapterFirst;
+            mVisibleLast = adapterLast;
+            ((GridVisibleRangeListener) mAdapter).onVisibleRangeChanged(adapterFirst, adapterLast);
+        }
+    }
+
+    /**
+     * Binds the cell of an item position ahead of time and parks it until the
+     * grid asks for it. Only item cells are worth it, the fixed views already
+     * exist and placeholders cost next to nothing. Neither are the cells of a
+     * sectioned wrapper, which sizes its fillers from the order of its calls.
+     *
+     * @return whether a cell was bound
+     */
+    boolean prefetchView(int position, ViewGroup parent) {
+        final GridPositionMap map = mPositionMap;
+        if (mAdapter instanceof SectionedGridWrapperAdapter
+                || map.getSegment(position) != GridPositionMap.SEGMENT_ITEM
+                || mPrefetchedViews.get(position) != null) {
+            return false;
+        }
+        final int adapterPosition = map.getAdapterPosition(position);
+        final int viewType = mAdapter.getItemViewType(adapterPosition);
+        final ArrayList<View> spares = mSpareViews.get(viewType);
+        final View convertView = spares != null && !spares.isEmpty()
+                ? spares.remove(spares.size() - 1) : null;
+        // Not through getView(), the row heights follow the order of the layout pass
+        final View view = mAdapter.getView(adapterPosition, convertView, parent);
+        view.setTag(R.id.grid_cell_view_type, viewType);
+        mPrefetchedViews.put(position, view);
+        return true;
+    }
+
+    /**
+     * Drops the parked cells outside of the given positions, which the
+     * scroll no longer heads to.
+     */
+    void trimPrefetchedViews(int start, int end) {
+        for (int i = mPrefetchedViews.size() - 1; i >= 0; i--) {
+            final int position = mPrefetchedViews.keyAt(i);
+            if (position < start || position >= end) {
+                spareView(mPrefetchedViews.valueAt(i));
+                mPrefetchedViews.removeAt(i);
+            }
+        }
+    }
+
+    private void discardPrefetchedViews() {
+        for (int i = mPrefetchedViews.size() - 1; i >= 0; i--) {
+            spareView(mPrefetchedViews.valueAt(i));
+        }
+        mPrefetchedViews.clear();
+    }
+
+    private void spareView(View view) {
+        final Object viewType = view.getTag(R.id.grid_cell_view_type);
+        if (!(viewType instanceof Integer)) {
+            return;
+        }
+        ArrayList<View> spares = mSpareViews.get((Integer) viewType);
+        if (spares == null) {
+            spares = new ArrayList<View>();
+            mSpareViews.put((Integer) viewType, spares);
+        }
+        // Two rows are enough to switch scroll direction
+        if (spares.size() < 2 * mPositionMap.getNumColumns()) {
+            spares.add(view);
+        }
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return mPositionMap.getItemViewType(position, mCells,
+                AdapterView.ITEM_VIEW_TYPE_HEADER_OR_FOOTER);
+    }
+
+    @Override
+    public int getViewTypeCount() {
+        if (mAdapter != null) {
+            return mAdapter.getViewTypeCount() + 1;
+        }
+        return 2;
+    }
+
+    @Override
+    public void registerDataSetObserver(DataSetObserver observer) {
+        if (mListObserver == null && mGrid != null && mGrid.isAttachingAdapter()) {
+            // The grid's own observer, which learns about ranges through a proxy
+            mListObserver = observer;
+            mListObserverProxy = mGrid.createRangeObserver(observer);
+            observer = mListObserverProxy;
+        }
+        mDataSetObservable.registerObserver(observer);
+        if (mObserverCount++ == 0 && mAdapter != null) {
+            mAdapter.registerDataSetObserver(mAdapterObserver);
+            // The wrapped adapter may have changed while nobody was listening
+            rebuildPositionMap();
+        }
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+        if (observer != null && observer == mListObserver) {
+            observer = mListObserverProxy;
+            mListObserver = null;
+            mListObserverProxy = null;
+        }
+        mDataSetObservable.unregisterObserver(observer);
+        if (--mObserverCount == 0 && mAdapter != null) {
+            mAdapter.unregisterDataSetObserver(mAdapterObserver);
+        }
+    }
+
+    @Override
+    public Filter getFilter() {
+        if (mIsFilterable) {
+            return ((Filterable) mAdapter).getFilter();
+        }
+        return null;
+    }
+
+    @Override
+    public ListAdapter getWrappedAdapter() {
+        return mAdapter;
+    }
+
+    /**
+     * Notifies the grid that the fixed views or the number of columns
+     * changed. The notification is sent on the next frame at the latest, and
+     * several calls before then result in a single notification.
+     */
+    public void notifyDataSetChanged() {
+        mNotifier.request();
+    }
+
+    /**
+     * Sends a pending notification now.
+     */
+    void flushPendingChanges() {
+        mNotifier.flush();
+    }
+
+    /**
+     * Called by the grid when its outermost batch update is committed.
+     */
+    void onBatchCommitted() {
+        mNotifier.onBatchCommitted();
+    }
+}
@@ -16,528 +16,236 @@
 
 package com.gv.app;
 
-import android.annotation.TargetApi;
 import android.content.Context;
-import android.database.DataSetObservable;
 import android.database.DataSetObserver;
-import android.os.Build;
+import android.graphics.Canvas;
 import android.util.AttributeSet;
 import android.view.View;
 import android.view.ViewGroup;
-import android.view.View.MeasureSpec;
-import android.widget.AdapterView;
-import android.widget.Filter;
-import android.widget.Filterable;
-import android.widget.FrameLayout;
 import android.widget.GridView;
 import android.widget.ListAdapter;
-import android.widget.WrapperListAdapter;
-
-import java.util.ArrayList;
 
 /**
  * A {@link GridView} that supports adding header rows in a
- * very similar way to {@link ListView}.
+ * very similar way to {@link android.widget.ListView}.
  * See {@link HeaderGridView#addHeaderView(View, Object, boolean)}
+ * <p>
+ * The grid can also be put in sectioned mode with
+ * {@link HeaderGridView#setSectionedAdapter(SectionedGridAdapter)}, where a
+ * full-width header row starts each section and the header of the current
+ * section stays pinned at the top.
+ * <p>
+ * The header and footer handling is shared with {@link FooterGridView}
+ * through {@link HeaderFooterGridView}.
  */
-public class HeaderGridView extends GridView {
+public class HeaderGridView extends HeaderFooterGridView {
     private static final String TAG = "HeaderGridView";
-    
-    private int mNumColsCompat = AUTO_FIT;
-    private int mRequestedHorizontalSpacing;
-    private int mRequestedNumColumns;
-    private int mRequestedColumnWidth;
 
-    /**
-     * A class that represents a fixed view in a list, for example a header at the top
-     * or a footer at the bottom.
-     */
-    private static class FixedViewInfo {
-        /** The view to add to the grid */
-        public View view;
-        public ViewGroup viewContainer;
-        /** The data backing the view. This is returned from {@link ListAdapter#getItem(int)}. */
-        public Object data;
-        /** <code>true</code> if the fixed view should be selectable in the grid */
-        public boolean isSelectable;
-    }
+    private SectionedGridWrapperAdapter mSectionedWrapper;
 
-    private ArrayList<FixedViewInfo> mHeaderViewInfos = new ArrayList<FixedViewInfo>();
+    private boolean mPinnedSectionHeaderEnabled = true;
+    // The pinned header is not a child of the grid, it is only drawn over it
+    private View mPinnedHeaderView;
+    private int mPinnedSection = -1;
+    private int mPinnedHeaderWidth;
 
-    private void initHeaderGridView() {
-        super.setClipChildren(false);
-    }
+    private final DataSetObserver mSectionObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            mPinnedSection = -1;
+        }
+
+        @Override
+        public void onInvalidated() {
+            mPinnedSection = -1;
+        }
+    };
 
     public HeaderGridView(Context context) {
         super(context);
-        initHeaderGridView();
     }
 
     public HeaderGridView(Context context, AttributeSet attrs) {
         super(context, attrs);
-        initHeaderGridView();
     }
 
     public HeaderGridView(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
-        initHeaderGridView();
-    }
-
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-        if (!isHR()) {
-        	final int available = MeasureSpec.getSize(widthMeasureSpec) - 
-        			getPaddingLeft() - getPaddingRight();
-        	onFigureColumns(available);
-        }
-        ListAdapter adapter = getAdapter();
-        if (adapter != null && adapter instanceof HeaderViewGridAdapter) {
-            ((HeaderViewGridAdapter) adapter).setNumColumns(getNumColumnsCompat());
-        }
-    }
-    
-    private static boolean isHR() {
-    	return android.os.Build.VERSION.SDK_INT >= 
-    			android.os.Build.VERSION_CODES.HONEYCOMB;
-    }
-    
-    private int getNumColumnsCompat() {
-    	if (isHR()) {
-    		return getNumColumnsHC();
-    	}
-    	return mNumColsCompat;
-    }
-    
-    @TargetApi(Build.VERSION_CODES.HONEYCOMB) 
-    private int getNumColumnsHC() {
-    	return getNumColumns();
-    }
-
-    @Override
-    public void setHorizontalSpacing(int horizontalSpacing) {
-    	super.setHorizontalSpacing(horizontalSpacing);
-        if (horizontalSpacing != mRequestedHorizontalSpacing) {
-        	mRequestedHorizontalSpacing = horizontalSpacing;
-        }
-    }
-    
-    @Override
-    public void setColumnWidth(int columnWidth) {
-    	super.setColumnWidth(columnWidth);
-        if (columnWidth != mRequestedColumnWidth) {
-            mRequestedColumnWidth = columnWidth;
-        }
-    }
-    
-    @Override
-    public void setNumColumns(int numColumns) {
-    	super.setNumColumns(numColumns);
-        if (numColumns != mRequestedNumColumns) {
-            mRequestedNumColumns = numColumns;
-        }
-    }
-    
-    private void onFigureColumns(int availableSpace) {
-        final int requestedHorizontalSpacing = mRequestedHorizontalSpacing;
-        final int requestedColumnWidth = mRequestedColumnWidth;
-        
-        if (mRequestedNumColumns == AUTO_FIT) {
-            if (requestedColumnWidth > 0) {
-                // Client told us to pick the number of columns
-            	mNumColsCompat = (availableSpace + requestedHorizontalSpacing) /
-                        (requestedColumnWidth + requestedHorizontalSpacing);
-            } else {
-                // Just make up a number if we don't have enough info
-            	mNumColsCompat = 2;
-            }
-        } else {
-            // We picked the columns
-        	mNumColsCompat = mRequestedNumColumns;
-        }
-        
-        if (mNumColsCompat <= 0) {
-        	mNumColsCompat = 1;
-        }
-    }
-
-    @Override
-    public void setClipChildren(boolean clipChildren) {
-       // Ignore, since the header rows depend on not being clipped
     }
 
     /**
-     * Add a fixed view to appear at the top of the grid. If addHeaderView is
-     * called more than once, the views will appear in the order they were
-     * added. Views added using this call can take focus if they want.
-     * <p>
-     * NOTE: Call this before calling setAdapter. This is so HeaderGridView can wrap
-     * the supplied cursor with one that will also account for header views.
+     * Puts the grid in sectioned mode. Every section of the adapter starts
+     * with a full-width header row, and those rows are recycled like normal
+     * cells. Header views added with {@link #addHeaderView(View)} still come
+     * before the first section.
      *
-     * @param v The view to add.
-     * @param data Data to associate with this view
-     * @param isSelectable whether the item is selectable
+     * @param adapter the sectioned adapter, or null to clear the grid
      */
-    public void addHeaderView(View v, Object data, boolean isSelectable) {
-        ListAdapter adapter = getAdapter();
-
-        if (adapter != null && ! (adapter instanceof HeaderViewGridAdapter)) {
-            throw new IllegalStateException(
-                    "Cannot add header view to grid -- setAdapter has already been called.");
+    public void setSectionedAdapter(SectionedGridAdapter adapter) {
+        if (mSectionedWrapper != null) {
+            mSectionedWrapper.getSectionedAdapter().unregisterDataSetObserver(mSectionObserver);
         }
+        mPinnedHeaderView = null;
+        mPinnedSection = -1;
 
-        FixedViewInfo info = new FixedViewInfo();
-        FrameLayout fl = new FullWidthFixedViewLayout(getContext());
-        fl.addView(v);
-        info.view = v;
-        info.viewContainer = fl;
-        info.data = data;
-        info.isSelectable = isSelectable;
-        mHeaderViewInfos.add(info);
+        if (adapter == null) {
+            mSectionedWrapper = null;
+            setAdapter(null);
+            return;
+        }
 
-        // in the case of re-adding a header view, or adding one later on,
-        // we need to notify the observer
-        if (adapter != null) {
-            ((HeaderViewGridAdapter) adapter).notifyDataSetChanged();
+        mSectionedWrapper = new SectionedGridWrapperAdapter(this, adapter);
+        int numColumns = getNumColumnsCompat();
+        if (numColumns > 1) {
+            mSectionedWrapper.setNumColumns(numColumns);
+            mSectionedWrapper.flushPendingChanges();
         }
+        adapter.registerDataSetObserver(mSectionObserver);
+        setAdapter(mSectionedWrapper);
     }
 
     /**
-     * Add a fixed view to appear at the top of the grid. If addHeaderView is
-     * called more than once, the views will appear in the order they were
-     * added. Views added using this call can take focus if they want.
-     * <p>
-     * NOTE: Call this before calling setAdapter. This is so HeaderGridView can wrap
-     * the supplied cursor with one that will also account for header views.
-     *
-     * @param v The view to add.
+     * @return the adapter set with {@link #setSectionedAdapter(SectionedGridAdapter)},
+     *         or null if the grid is not in sectioned mode
      */
-    public void addHeaderView(View v) {
-        addHeaderView(v, null, true);
-    }
-
-    public int getHeaderViewCount() {
-        return mHeaderViewInfos.size();
+    public SectionedGridAdapter getSectionedAdapter() {
+        return mSectionedWrapper != null ? mSectionedWrapper.getSectionedAdapter() : null;
     }
 
     /**
-     * Removes a previously-added header view.
-     *
-     * @param v The view to remove
-     * @return true if the view was removed, false if the view was not a header
-     *         view
+     * Sets whether the header of the section at the top of the grid stays
+     * pinned while its items scroll underneath. Enabled by default.
      */
-    public boolean removeHeaderView(View v) {
-        if (mHeaderViewInfos.size() > 0) {
-            boolean result = false;
-            ListAdapter adapter = getAdapter();
-            if (adapter != null && ((HeaderViewGridAdapter) adapter).removeHeader(v)) {
-                result = true;
-            }
-            removeFixedViewInfo(v, mHeaderViewInfos);
-            return result;
+    public void setPinnedSectionHeaderEnabled(boolean enabled) {
+        if (mPinnedSectionHeaderEnabled != enabled) {
+            mPinnedSectionHeaderEnabled = enabled;
+            invalidate();
         }
-        return false;
     }
 
-    private void removeFixedViewInfo(View v, ArrayList<FixedViewInfo> where) {
-        int len = where.size();
-        for (int i = 0; i < len; ++i) {
-            FixedViewInfo info = where.get(i);
-            if (info.view == v) {
-                where.remove(i);
-                break;
-            }
-        }
+    public boolean isPinnedSectionHeaderEnabled() {
+        return mPinnedSectionHeaderEnabled;
     }
 
     @Override
     public void setAdapter(ListAdapter adapter) {
-        if (mHeaderViewInfos.size() > 0) {
-            HeaderViewGridAdapter hadapter = new HeaderViewGridAdapter(mHeaderViewInfos, adapter);
-            int numColumns = getNumColumnsCompat();
-            if (numColumns > 1) {
-                hadapter.setNumColumns(numColumns);
-            }
-            super.setAdapter(hadapter);
-        } else {
-            super.setAdapter(adapter);
+        if (mSectionedWrapper != null && adapter != mSectionedWrapper) {
+            // A plain adapter leaves sectioned mode
+            mSectionedWrapper.getSectionedAdapter().unregisterDataSetObserver(mSectionObserver);
+            mSectionedWrapper = null;
+            mPinnedHeaderView = null;
+            mPinnedSection = -1;
         }
+        super.setAdapter(adapter);
     }
 
-    private class FullWidthFixedViewLayout extends FrameLayout {
-        public FullWidthFixedViewLayout(Context context) {
-            super(context);
-        }
-
-        @Override
-        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-            int targetWidth = HeaderGridView.this.getMeasuredWidth()
-                    - HeaderGridView.this.getPaddingLeft()
-                    - HeaderGridView.this.getPaddingRight();
-            widthMeasureSpec = MeasureSpec.makeMeasureSpec(targetWidth,
-                    MeasureSpec.getMode(widthMeasureSpec));
-            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    @Override
+    void dispatchNumColumns(int numColumns) {
+        if (mSectionedWrapper != null) {
+            mSectionedWrapper.setNumColumns(numColumns);
+            mSectionedWrapper.flushPendingChanges();
         }
+        super.dispatchNumColumns(numColumns);
     }
 
-    /**
-     * ListAdapter used when a HeaderGridView has header views. This ListAdapter
-     * wraps another one and also keeps track of the header views and their
-     * associated data objects.
-     *<p>This is intended as a base class; you will probably not need to
-     * use this class directly in your own code.
-     */
-    private static class HeaderViewGridAdapter implements WrapperListAdapter, Filterable {
-
-        // This is used to notify the container of updates relating to number of columns
-        // or headers changing, which changes the number of placeholders needed
-        private final DataSetObservable mDataSetObservable = new DataSetObservable();
-
-        private final ListAdapter mAdapter;
-        private int mNumColumns = 1;
-
-        // This ArrayList is assumed to NOT be null.
-        ArrayList<FixedViewInfo> mHeaderViewInfos;
-
-        boolean mAreAllFixedViewsSelectable;
-
-        private final boolean mIsFilterable;
-
-        public HeaderViewGridAdapter(ArrayList<FixedViewInfo> headerViewInfos, ListAdapter adapter) {
-            mAdapter = adapter;
-            mIsFilterable = adapter instanceof Filterable;
-
-            if (headerViewInfos == null) {
-                throw new IllegalArgumentException("headerViewInfos cannot be null");
-            }
-            mHeaderViewInfos = headerViewInfos;
-
-            mAreAllFixedViewsSelectable = areAllListInfosSelectable(mHeaderViewInfos);
-        }
-
-        public int getHeadersCount() {
-            return mHeaderViewInfos.size();
-        }
-
-        @Override
-        public boolean isEmpty() {
-            return (mAdapter == null || mAdapter.isEmpty()) && getHeadersCount() == 0;
-        }
-
-        public void setNumColumns(int numColumns) {
-            if (numColumns < 1) {
-                throw new IllegalArgumentException("Number of columns must be 1 or more");
-            }
-            if (mNumColumns != numColumns) {
-                mNumColumns = numColumns;
-                notifyDataSetChanged();
-            }
-        }
-
-        private boolean areAllListInfosSelectable(ArrayList<FixedViewInfo> infos) {
-            if (infos != null) {
-                for (FixedViewInfo info : infos) {
-                    if (!info.isSelectable) {
-                        return false;
-                    }
-                }
-            }
-            return true;
-        }
-
-        public boolean removeHeader(View v) {
-            for (int i = 0; i < mHeaderViewInfos.size(); i++) {
-                FixedViewInfo info = mHeaderViewInfos.get(i);
-                if (info.view == v) {
-                    mHeaderViewInfos.remove(i);
-
-                    mAreAllFixedViewsSelectable = areAllListInfosSelectable(mHeaderViewInfos);
-
-                    mDataSetObservable.notifyChanged();
-                    return true;
-                }
-            }
-
-            return false;
-        }
-
-        @Override
-        public int getCount() {
-            if (mAdapter != null) {
-                return getHeadersCount() * mNumColumns + mAdapter.getCount();
-            } else {
-                return getHeadersCount() * mNumColumns;
-            }
-        }
-
-        @Override
-        public boolean areAllItemsEnabled() {
-            if (mAdapter != null) {
-                return mAreAllFixedViewsSelectable && mAdapter.areAllItemsEnabled();
-            } else {
-                return true;
-            }
-        }
-
-        @Override
-        public boolean isEnabled(int position) {
-            // Header (negative positions will throw an ArrayIndexOutOfBoundsException)
-            int numHeadersAndPlaceholders = getHeadersCount() * mNumColumns;
-            if (position < numHeadersAndPlaceholders) {
-                return (position % mNumColumns == 0)
-                        && mHeaderViewInfos.get(position / mNumColumns).isSelectable;
-            }
-
-            // Adapter
-            final int adjPosition = position - numHeadersAndPlaceholders;
-            int adapterCount = 0;
-            if (mAdapter != null) {
-                adapterCount = mAdapter.getCount();
-                if (adjPosition < adapterCount) {
-                    return mAdapter.isEnabled(adjPosition);
-                }
-            }
-
-            throw new ArrayIndexOutOfBoundsException(position);
-        }
-
-        @Override
-        public Object getItem(int position) {
-            // Header (negative positions will throw an ArrayIndexOutOfBoundsException)
-            int numHeadersAndPlaceholders = getHeadersCount() * mNumColumns;
-            if (position < numHeadersAndPlaceholders) {
-                if (position % mNumColumns == 0) {
-                    return mHeaderViewInfos.get(position / mNumColumns).data;
-                }
-                return null;
-            }
-
-            // Adapter
-            final int adjPosition = position - numHeadersAndPlaceholders;
-            int adapterCount = 0;
-            if (mAdapter != null) {
-                adapterCount = mAdapter.getCount();
-                if (adjPosition < adapterCount) {
-                    return mAdapter.getItem(adjPosition);
-                }
-            }
-
-            throw new ArrayIndexOutOfBoundsException(position);
-        }
-
-        @Override
-        public long getItemId(int position) {
-            int numHeadersAndPlaceholders = getHeadersCount() * mNumColumns;
-            if (mAdapter != null && position >= numHeadersAndPlaceholders) {
-                int adjPosition = position - numHeadersAndPlaceholders;
-                int adapterCount = mAdapter.getCount();
-                if (adjPosition < adapterCount) {
-                    return mAdapter.getItemId(adjPosition);
-                }
-            }
-            return -1;
-        }
-
-        @Override
-        public boolean hasStableIds() {
-            if (mAdapter != null) {
-                return mAdapter.hasStableIds();
-            }
-            return false;
-        }
-
-        @Override
-        public View getView(int position, View convertView, ViewGroup parent) {
-            // Header (negative positions will throw an ArrayIndexOutOfBoundsException)
-            int numHeadersAndPlaceholders = getHeadersCount() * mNumColumns ;
-            if (position < numHeadersAndPlaceholders) {
-                View headerViewContainer = mHeaderViewInfos
-                        .get(position / mNumColumns).viewContainer;
-                if (position % mNumColumns == 0) {
-                    return headerViewContainer;
-                } else {
-                    if (convertView == null) {
-                        convertView = new View(parent.getContext());
-                    }
-                    // We need to do this because GridView uses the height of the last item
-                    // in a row to determine the height for the entire row.
-                    convertView.setVisibility(View.INVISIBLE);
-                    convertView.setMinimumHeight(headerViewContainer.getHeight());
-                    return convertView;
-                }
-            }
-
-            // Adapter
-            final int adjPosition = position - numHeadersAndPlaceholders;
-            int adapterCount = 0;
-            if (mAdapter != null) {
-                adapterCount = mAdapter.getCount();
-                if (adjPosition < adapterCount) {
-                    return mAdapter.getView(adjPosition, convertView, parent);
-                }
-            }
-
-            throw new ArrayIndexOutOfBoundsException(position);
+    @Override
+    void onBatchCommitted() {
+        if (mSectionedWrapper != null) {
+            mSectionedWrapper.onBatchCommitted();
         }
+        super.onBatchCommitted();
+    }
 
-        @Override
-        public int getItemViewType(int position) {
-            int numHeadersAndPlaceholders = getHeadersCount() * mNumColumns;
-            if (position < numHeadersAndPlaceholders && (position % mNumColumns != 0)) {
-                // Placeholders get the last view type number
-                return mAdapter != null ? mAdapter.getViewTypeCount() : 1;
-            }
-            if (mAdapter != null && position >= numHeadersAndPlaceholders) {
-                int adjPosition = position - numHeadersAndPlaceholders;
-                int adapterCount = mAdapter.getCount();
-                if (adjPosition < adapterCount) {
-                    return mAdapter.getItemViewType(adjPosition);
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+        if (mSectionedWrapper != null && mPinnedSectionHeaderEnabled) {
+            drawPinnedSectionHeader(canvas);
+        }
+    }
+
+    private void drawPinnedSectionHeader(Canvas canvas) {
+        final int childCount = getChildCount();
+        if (childCount == 0) {
+            return;
+        }
+        final int firstPosition = getFirstVisiblePosition();
+        final int sectionedPosition = getSectionedPosition(firstPosition);
+        if (sectionedPosition < 0) {
+            // Header views added with addHeaderView() are at the top
+            return;
+        }
+
+        final SectionPositionMap map = mSectionedWrapper.getPositionMap();
+        final int section = map.getSection(sectionedPosition);
+        final int top = getPaddingTop();
+        if (map.getSectionStart(section) == sectionedPosition
+                && getChildAt(0).getTop() >= top) {
+            // The header row itself is fully visible
+            return;
+        }
+
+        final View pinned = obtainPinnedHeader(section);
+        final int pinnedHeight = pinned.getMeasuredHeight();
+
+        // Let the header of the next section push the pinned one up
+        int offset = 0;
+        if (section + 1 < map.getSectionCount()) {
+            final int nextIndex = getGridPosition(map.getSectionStart(section + 1))
+                    - firstPosition;
+            if (nextIndex >= 0 && nextIndex < childCount) {
+                final int nextTop = getChildAt(nextIndex).getTop();
+                if (nextTop < top + pinnedHeight) {
+                    offset = nextTop - top - pinnedHeight;
                 }
             }
-
-            return AdapterView.ITEM_VIEW_TYPE_HEADER_OR_FOOTER;
-        }
-
-        @Override
-        public int getViewTypeCount() {
-            if (mAdapter != null) {
-                return mAdapter.getViewTypeCount() + 1;
-            }
-            return 2;
         }
 
-        @Override
-        public void registerDataSetObserver(DataSetObserver observer) {
-            mDataSetObservable.registerObserver(observer);
-            if (mAdapter != null) {
-                mAdapter.registerDataSetObserver(observer);
-            }
-        }
+        final int saveCount = canvas.save();
+        canvas.clipRect(getPaddingLeft(), top, getWidth() - getPaddingRight(),
+                getHeight() - getPaddingBottom());
+        canvas.translate(getPaddingLeft(), top + offset);
+        pinned.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
 
-        @Override
-        public void unregisterDataSetObserver(DataSetObserver observer) {
-            mDataSetObservable.unregisterObserver(observer);
-            if (mAdapter != null) {
-                mAdapter.unregisterDataSetObserver(observer);
-            }
-        }
+    private View obtainPinnedHeader(int section) {
+        final int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        if (mPinnedHeaderView == null || section != mPinnedSection
+                || width != mPinnedHeaderWidth || mPinnedHeaderView.isLayoutRequested()) {
+            final View header = mSectionedWrapper.getSectionedAdapter()
+                    .getSectionHeaderView(section, mPinnedHeaderView, this);
+            final ViewGroup.LayoutParams lp = header.getLayoutParams();
+            final int heightSpec = lp != null && lp.height > 0
+                    ? MeasureSpec.makeMeasureSpec(lp.height, MeasureSpec.EXACTLY)
+                    : MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+            header.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY), heightSpec);
+            header.layout(0, 0, header.getMeasuredWidth(), header.getMeasuredHeight());
 
-        @Override
-        public Filter getFilter() {
-            if (mIsFilterable) {
-                return ((Filterable) mAdapter).getFilter();
-            }
-            return null;
+            mPinnedHeaderView = header;
+            mPinnedSection = section;
+            mPinnedHeaderWidth = width;
         }
+        return mPinnedHeaderView;
+    }
 
-        @Override
-        public ListAdapter getWrappedAdapter() {
-            return mAdapter;
+    /**
+     * @return the position in the sectioned wrapper of a grid position, or -1
+     *         if the position belongs to a header or footer view
+     */
+    private int getSectionedPosition(int position) {
+        final ListAdapter adapter = getAdapter();
+        if (adapter instanceof HeaderFooterViewGridAdapter) {
+            return ((HeaderFooterViewGridAdapter) adapter).getAdapterPosition(position);
         }
+        return position >= 0 && position < mSectionedWrapper.getCount() ? position : -1;
+    }
 
-        public void notifyDataSetChanged() {
-            mDataSetObservable.notifyChanged();
+    private int getGridPosition(int sectionedPosition) {
+        final ListAdapter adapter = getAdapter();
+        if (adapter instanceof HeaderFooterViewGridAdapter) {
+            return ((HeaderFooterViewGridAdapter) adapter).getGridPosition(sectionedPosition);
         }
+        return sectionedPosition;
     }
 }
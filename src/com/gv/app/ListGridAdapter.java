@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * A {@link BaseGridAdapter} over a list of items that is replaced as a whole.
+ * <p>
+ * {@link #submitList(List)} compares the new list with the current one on a
+ * background executor, and reports only the items that were removed,
+ * inserted or changed. The grid then rebinds only those cells. Items are
+ * matched by {@link ItemCallback#areItemsTheSame}; an item that moved is
+ * reported as removed from its old position and inserted at its new one.
+ * <p>
+ * The adapter keeps showing the current list until the comparison is done.
+ * A list submitted while another one is still being compared replaces it.
+ *
+ * @param <T> the type of the items
+ */
+public abstract class ListGridAdapter<T> extends BaseGridAdapter {
+
+    /**
+     * Tells how items of the old list relate to items of the new one. Called
+     * on the background executor.
+     *
+     * @param <T> the type of the items
+     */
+    public interface ItemCallback<T> {
+        /**
+         * @return whether both items stand for the same entity, usually by
+         *         comparing their ids
+         */
+        boolean areItemsTheSame(T oldItem, T newItem);
+
+        /**
+         * Called only for items that are the same.
+         *
+         * @return whether both items show the same, so that the cell of the
+         *         item does not have to be bound again
+         */
+        boolean areContentsTheSame(T oldItem, T newItem);
+    }
+
+    private static Executor sDefaultExecutor;
+
+    private final ItemCallback<T> mCallback;
+    private final Executor mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private List<T> mList = Collections.emptyList();
+    // Incremented on every submit, so that the result of an outdated comparison is dropped
+    private int mGeneration;
+
+    protected ListGridAdapter(ItemCallback<T> callback) {
+        this(callback, getDefaultExecutor());
+    }
+
+    /**
+     * @param callback matches the items of the old and new lists
+     * @param executor the executor to compare the lists on
+     */
+    protected ListGridAdapter(ItemCallback<T> callback, Executor executor) {
+        if (callback == null || executor == null) {
+            throw new IllegalArgumentException("callback and executor must not be null");
+        }
+        mCallback = callback;
+        mExecutor = executor;
+    }
+
+    private static synchronized Executor getDefaultExecutor() {
+        if (sDefaultExecutor == null) {
+            sDefaultExecutor = Executors.newSingleThreadExecutor();
+        }
+        return sDefaultExecutor;
+    }
+
+    /**
+     * Replaces the list of items. Must be called on the main thread, and the
+     * list must not be modified afterwards.
+     *
+     * @param list the new items, or null for none
+     */
+    public void submitList(List<T> list) {
+        final List<T> newList = list != null ? list : Collections.<T>emptyList();
+        final List<T> oldList = mList;
+        final int generation = ++mGeneration;
+        if (newList == oldList) {
+            return;
+        }
+        if (oldList.isEmpty() || newList.isEmpty()) {
+            // Nothing to compare, all items were inserted or removed
+            mList = newList;
+            if (!oldList.isEmpty()) {
+                notifyItemRangeRemoved(0, oldList.size());
+            } else if (!newList.isEmpty()) {
+                notifyItemRangeInserted(0, newList.size());
+            }
+            return;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final GridDiff diff = GridDiff.compute(oldList, newList, mCallback);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            applyDiff(newList, diff);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void applyDiff(List<T> newList, GridDiff diff) {
+        mList = newList;
+        final int count = diff.getUpdateCount();
+        for (int i = 0; i < count; i++) {
+            final int position = diff.getUpdatePosition(i);
+            final int itemCount = diff.getUpdateItemCount(i);
+            switch (diff.getUpdateType(i)) {
+                case GridDiff.UPDATE_REMOVED:
+                    notifyItemRangeRemoved(position, itemCount);
+                    break;
+                case GridDiff.UPDATE_INSERTED:
+                    notifyItemRangeInserted(position, itemCount);
+                    break;
+                default:
+                    notifyItemRangeChanged(position, itemCount);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return the list currently shown, not the one being compared
+     */
+    public List<T> getList() {
+        return mList;
+    }
+
+    @Override
+    public int getCount() {
+        return mList.size();
+    }
+
+    @Override
+    public T getItem(int position) {
+        return mList.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+}
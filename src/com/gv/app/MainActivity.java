@@ -62,7 +62,7 @@ public class MainActivity extends ActionBarActivity implements OnItemClickListen
 		public View getView(int arg0, View arg1, ViewGroup arg2) {
 			View view = arg1;
 			if (view == null) {
-				view = getLayoutInflater().inflate(R.layout.griditem, arg2, false);
+				view = mCellPool.obtain(0, arg2);
 			}
 			((TextView)view).setText(mElementsData[arg0]);
 			return view;
@@ -90,6 +90,8 @@ public class MainActivity extends ActionBarActivity implements OnItemClickListen
         BaseAdapter adapter = new TestAdapter();
         TextView header = (TextView) getLayoutInflater().inflate(R.layout.griditem, gv, false);
         HeaderGridView hgv = (HeaderGridView)gv;
+        mCellPool = hgv.getCellInflationPool();
+        mCellPool.addCellLayout(0, R.layout.griditem, true);
         hgv.addHeaderView(header, null, true);
         hgv.setAdapter(adapter);
         hgv.setOnItemClickListener(this);
@@ -102,6 +104,8 @@ public class MainActivity extends ActionBarActivity implements OnItemClickListen
         BaseAdapter adapter = new TestAdapter();
         TextView header = (TextView) getLayoutInflater().inflate(R.layout.griditem, gv, false);
         FooterGridView hgv = (FooterGridView)gv;
+        mCellPool = hgv.getCellInflationPool();
+        mCellPool.addCellLayout(0, R.layout.griditem, true);
         hgv.addFooterView(header, null, true);
         hgv.setAdapter(adapter);
         hgv.setOnItemClickListener(this);
@@ -127,4 +131,6 @@ public class MainActivity extends ActionBarActivity implements OnItemClickListen
     }
     
     private static final String TAG = MainActivity.class.getName();
+    
+    private CellInflationPool mCellPool;
 }
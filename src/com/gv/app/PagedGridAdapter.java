@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.database.DataSetObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
+import android.util.SparseBooleanArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * A {@link BaseGridAdapter} over data too large to load at once. The items
+ * are loaded in pages of a fixed size on a background executor, and only the
+ * most recently used pages are kept in memory.
+ * <p>
+ * The adapter counts the items of the pages loaded so far. The next page is
+ * loaded when an item within the prefetch distance of the end is asked for,
+ * and its items are reported as inserted. A page that was dropped from
+ * memory is loaded again when one of its items is asked for; until then
+ * {@link #getItem(int)} returns null for them. Implementations of
+ * {@link #getView(int, android.view.View, android.view.ViewGroup)} get their
+ * items through {@link #getItem(int)} and show a blank cell for null.
+ * <p>
+ * The state of the loading at the end is reported to
+ * {@link OnLoadStateChangeListener}s. {@link FooterGridView} uses it to show
+ * a loading or error footer.
+ *
+ * @param <T> the type of the items
+ */
+public abstract class PagedGridAdapter<T> extends BaseGridAdapter {
+
+    /** The next page is not being loaded */
+    public static final int STATE_IDLE = 0;
+    /** The next page is being loaded */
+    public static final int STATE_LOADING = 1;
+    /** Loading the next page failed, see {@link #retry()} */
+    public static final int STATE_ERROR = 2;
+    /** The last page was loaded */
+    public static final int STATE_COMPLETE = 3;
+
+    /**
+     * Interface definition for a callback to be invoked when the loading of
+     * the next page starts, ends or fails.
+     */
+    public interface OnLoadStateChangeListener {
+        /**
+         * @param adapter the adapter whose state changed
+         * @param state one of {@link #STATE_IDLE}, {@link #STATE_LOADING},
+         *        {@link #STATE_ERROR} or {@link #STATE_COMPLETE}
+         */
+        void onLoadStateChanged(PagedGridAdapter<?> adapter, int state);
+    }
+
+    private static Executor sDefaultExecutor;
+
+    private final int mPageSize;
+    private final LruCache<Integer, List<T>> mPages;
+    private final Executor mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final SparseBooleanArray mLoadingPages = new SparseBooleanArray();
+    private final ArrayList<OnLoadStateChangeListener> mListeners =
+            new ArrayList<OnLoadStateChangeListener>();
+
+    private int mItemCount;
+    private int mLoadedPageCount;
+    private int mPrefetchDistance;
+    private int mState = STATE_IDLE;
+    private Exception mError;
+    // Pages loaded before the last refresh() are dropped
+    private int mGeneration;
+
+    /**
+     * Loads the pages on an executor shared by all paged adapters.
+     *
+     * @param pageSize the number of items in a page
+     * @param maxPages the most pages to keep in memory, at least 1
+     */
+    public PagedGridAdapter(int pageSize, int maxPages) {
+        this(pageSize, maxPages, getDefaultExecutor());
+    }
+
+    /**
+     * @param pageSize the number of items in a page
+     * @param maxPages the most pages to keep in memory, at least 1
+     * @param executor the executor to load the pages on
+     */
+    public PagedGridAdapter(int pageSize, int maxPages, Executor executor) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be 1 or more");
+        }
+        mPageSize = pageSize;
+        mPages = new LruCache<Integer, List<T>>(maxPages);
+        mExecutor = executor;
+        mPrefetchDistance = pageSize / 2;
+    }
+
+    private static synchronized Executor getDefaultExecutor() {
+        if (sDefaultExecutor == null) {
+            sDefaultExecutor = Executors.newSingleThreadExecutor();
+        }
+        return sDefaultExecutor;
+    }
+
+    /**
+     * Loads a page of items. Called on the executor.
+     *
+     * @param page the index of the page, from 0
+     * @param pageSize the number of items to load
+     * @return the items of the page, fewer than <code>pageSize</code> if it
+     *         is the last page, and an empty list past the last page. Null
+     *         is a programming error: the page fails to load with an
+     *         {@link IllegalStateException} as the load error.
+     * @throws Exception if the page could not be loaded
+     */
+    protected abstract List<T> loadPage(int page, int pageSize) throws Exception;
+
+    /**
+     * Sets how close to the end an item has to be asked for to start loading
+     * the next page. The default is half a page.
+     *
+     * @param distance the number of items from the end
+     */
+    public void setPrefetchDistance(int distance) {
+        mPrefetchDistance = distance;
+    }
+
+    public int getPrefetchDistance() {
+        return mPrefetchDistance;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    public void addOnLoadStateChangeListener(OnLoadStateChangeListener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeOnLoadStateChangeListener(OnLoadStateChangeListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * @return the state of the loading of the next page
+     */
+    public int getLoadState() {
+        return mState;
+    }
+
+    /**
+     * @return why the next page could not be loaded, or null if the state is
+     *         not {@link #STATE_ERROR}
+     */
+    public Exception getLoadError() {
+        return mError;
+    }
+
+    @Override
+    public void registerDataSetObserver(DataSetObserver observer) {
+        super.registerDataSetObserver(observer);
+        if (mLoadedPageCount == 0) {
+            // Somebody is going to show the items
+            loadMore();
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return mItemCount;
+    }
+
+    /**
+     * @return the item, or null if its page is being loaded again
+     */
+    @Override
+    public T getItem(int position) {
+        if (position >= mItemCount - mPrefetchDistance) {
+            loadMore();
+        }
+        final int page = position / mPageSize;
+        final List<T> items = mPages.get(page);
+        if (items == null) {
+            requestPage(page);
+            return null;
+        }
+        return items.get(position % mPageSize);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    /**
+     * Starts loading the next page, unless it is already being loaded, it
+     * failed or there is none.
+     */
+    public void loadMore() {
+        if (mState == STATE_IDLE) {
+            requestPage(mLoadedPageCount);
+        }
+    }
+
+    /**
+     * Loads the next page again after it failed.
+     */
+    public void retry() {
+        if (mState == STATE_ERROR) {
+            mError = null;
+            setState(STATE_IDLE);
+            loadMore();
+        }
+    }
+
+    /**
+     * Drops all the items and loads them again from the first page.
+     */
+    public void refresh() {
+        mGeneration++;
+        mPages.evictAll();
+        mLoadingPages.clear();
+        mItemCount = 0;
+        mLoadedPageCount = 0;
+        mError = null;
+        setState(STATE_IDLE);
+        notifyDataSetChanged();
+        loadMore();
+    }
+
+    private void requestPage(final int page) {
+        if (mLoadingPages.get(page)) {
+            return;
+        }
+        mLoadingPages.put(page, true);
+        if (page == mLoadedPageCount) {
+            setState(STATE_LOADING);
+        }
+        final int generation = mGeneration;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<T> items = null;
+                Exception error = null;
+                try {
+                    items = loadPage(page, mPageSize);
+                    if (items == null) {
+                        error = new IllegalStateException("loadPage returned null for page "
+                                + page);
+                    }
+                } catch (Exception e) {
+                    error = e;
+                }
+                final List<T> loaded = items;
+                final Exception failure = error;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(generation, page, loaded, failure);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int generation, int page, List<T> items, Exception error) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mLoadingPages.delete(page);
+        final boolean next = page == mLoadedPageCount;
+        if (items == null) {
+            // A page loaded again is asked for again when its items are
+            if (next) {
+                mError = error;
+                setState(STATE_ERROR);
+            }
+            return;
+        }
+
+        mPages.put(page, items);
+        if (next) {
+            final int start = mItemCount;
+            mLoadedPageCount++;
+            mItemCount += items.size();
+            notifyItemRangeInserted(start, items.size());
+            setState(items.size() < mPageSize ? STATE_COMPLETE : STATE_IDLE);
+        } else {
+            notifyItemRangeChanged(page * mPageSize, items.size());
+        }
+    }
+
+    private void setState(int state) {
+        if (mState != state) {
+            mState = state;
+            for (int i = mListeners.size() - 1; i >= 0; i--) {
+                mListeners.get(i).onLoadStateChanged(this, state);
+            }
+        }
+    }
+}
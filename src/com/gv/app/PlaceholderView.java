@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.view.View;
+
+/**
+ * The invisible cell the wrapper adapters hand out for the columns of a
+ * full-width row that the fixed view covers, and for the fillers that
+ * complete the last item row.
+ * <p>
+ * GridView needs one child per column, and it takes the height of a row from
+ * the last child of that row. So only the placeholder in the last column
+ * carries the row height; the others are measured at zero height. None of
+ * them draws, resolves a background or takes part in focus and accessibility.
+ * Changing the height only flags this view for measurement instead of
+ * requesting a layout of the whole grid.
+ */
+class PlaceholderView extends View {
+
+    private int mRowHeight;
+
+    public PlaceholderView(Context context) {
+        super(context);
+        setVisibility(INVISIBLE);
+        setWillNotDraw(true);
+        setFocusable(false);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            hideFromAccessibility();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void hideFromAccessibility() {
+        setImportantForAccessibility(IMPORTANT_FOR_ACCESSIBILITY_NO);
+    }
+
+    /**
+     * @param rowHeight the height of the row, or 0 if this placeholder does
+     *        not determine the row height
+     */
+    void setRowHeight(int rowHeight) {
+        if (mRowHeight != rowHeight) {
+            mRowHeight = rowHeight;
+            // The grid measures recycled children again only when they ask for it
+            forceLayout();
+        }
+    }
+
+    int getRowHeight() {
+        return mRowHeight;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), mRowHeight);
+    }
+
+    @Override
+    public boolean hasOverlappingRendering() {
+        return false;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * Per-row height cache used by the wrapper adapters to size the filler cells
+ * that complete a row of items.
+ * <p>
+ * GridView fills a row from left to right and measures each cell right after
+ * it got it from the adapter. So whenever the adapter hands out a cell, the
+ * cell handed out before it already has its real measured height. The cache
+ * records those heights per row, and a filler, which always comes last in its
+ * row, reads the tallest cell of the row without measuring anything itself.
+ */
+final class RowHeightCache {
+
+    private int[] mHeights = new int[32];
+
+    // The item cell handed out last, not measured yet when it was handed out
+    private View mPendingCell;
+    private int mPendingRow = -1;
+
+    /**
+     * Forgets all rows. Called when the data or the number of columns change.
+     */
+    void invalidate() {
+        Arrays.fill(mHeights, 0);
+        mPendingCell = null;
+        mPendingRow = -1;
+    }
+
+    /**
+     * Called when an item cell is handed out to the grid.
+     *
+     * @param row the row of the cell
+     * @param firstInRow whether the cell is in the first column, in which
+     *        case the row is being laid out again and its old height is dropped
+     */
+    void onCellObtained(int row, boolean firstInRow, View cell) {
+        flushPendingCell();
+        if (firstInRow) {
+            ensureCapacity(row);
+            mHeights[row] = 0;
+        }
+        mPendingCell = cell;
+        mPendingRow = row;
+    }
+
+    /**
+     * @return the height of the tallest item cell laid out in the row, or 0
+     *         if none was
+     */
+    int getRowHeight(int row) {
+        flushPendingCell();
+        return row < mHeights.length ? mHeights[row] : 0;
+    }
+
+    private void flushPendingCell() {
+        if (mPendingCell != null) {
+            ensureCapacity(mPendingRow);
+            mHeights[mPendingRow] = Math.max(mHeights[mPendingRow],
+                    mPendingCell.getMeasuredHeight());
+            mPendingCell = null;
+        }
+    }
+
+    private void ensureCapacity(int row) {
+        if (row >= mHeights.length) {
+            mHeights = Arrays.copyOf(mHeights, Math.max(row + 1, mHeights.length * 2));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.os.SystemClock;
+import android.view.View;
+
+/**
+ * Follows how far and how fast a grid scrolls between two scroll callbacks.
+ * The rows that went out of view in between are taken to be as high as the
+ * first visible one.
+ */
+final class ScrollSpeedTracker {
+
+    // Where the grid was scrolled to on the last callback
+    private int mLastFirstPosition = -1;
+    private int mLastTop;
+    private long mLastTime;
+
+    private int mDistance;
+    private float mSpeed;
+
+    /**
+     * Forgets the last position, for when the grid stopped scrolling.
+     */
+    void reset() {
+        mLastFirstPosition = -1;
+        mDistance = 0;
+        mSpeed = 0;
+    }
+
+    /**
+     * @param firstPosition the first visible position
+     * @param firstChild the view at that position
+     * @return whether the grid moved since the last call
+     */
+    boolean onScroll(int firstPosition, View firstChild, int numColumns) {
+        final int top = firstChild.getTop();
+        final long now = SystemClock.uptimeMillis();
+        final boolean tracking = mLastFirstPosition >= 0;
+        if (tracking) {
+            final int rowDelta = (firstPosition - mLastFirstPosition) / numColumns;
+            mDistance = rowDelta * getRowHeight(firstChild) + mLastTop - top;
+            mSpeed = Math.abs(mDistance) / (float) Math.max(now - mLastTime, 1);
+        }
+        mLastFirstPosition = firstPosition;
+        mLastTop = top;
+        mLastTime = now;
+        return tracking && mDistance != 0;
+    }
+
+    /**
+     * @return the distance scrolled up to the last call in pixels, positive
+     *         when moving towards the end
+     */
+    int getDistance() {
+        return mDistance;
+    }
+
+    /**
+     * @return the speed up to the last call in pixels per millisecond
+     */
+    float getSpeed() {
+        return mSpeed;
+    }
+
+    static int getRowHeight(View firstChild) {
+        return Math.max(firstChild.getHeight(), 1);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import java.util.Arrays;
+
+/**
+ * Maps flat grid positions onto the sections of a {@link SectionedGridAdapter}.
+ * <p>
+ * Every section starts on a row of its own with the section header in the
+ * first column followed by placeholders, then its items, then fillers that
+ * complete the last item row. The first position of each section is kept in
+ * a primitive array so a position is resolved with a binary search, no matter
+ * how many sections there are.
+ */
+final class SectionPositionMap {
+
+    static final int TYPE_SECTION_HEADER = 0;
+    static final int TYPE_HEADER_PLACEHOLDER = 1;
+    static final int TYPE_ITEM = 2;
+    static final int TYPE_FILLER = 3;
+
+    // mSectionStart[i] is the position of the header of section i; the entry
+    // after the last section holds the total number of positions
+    private int[] mSectionStart = new int[1];
+    private int[] mItemCount = new int[0];
+    private int mSectionCount;
+    private int mNumColumns = 1;
+
+    /**
+     * Recomputes the section offsets.
+     *
+     * @param itemCounts number of items of each section; only the first
+     *        <code>sectionCount</code> entries are read
+     * @param sectionCount number of sections
+     * @param numColumns number of columns of the grid, 1 or more
+     */
+    void rebuild(int[] itemCounts, int sectionCount, int numColumns) {
+        if (numColumns < 1) {
+            throw new IllegalArgumentException("Number of columns must be 1 or more");
+        }
+        if (mSectionStart.length < sectionCount + 1) {
+            mSectionStart = new int[sectionCount + 1];
+            mItemCount = new int[sectionCount];
+        }
+        mSectionCount = sectionCount;
+        mNumColumns = numColumns;
+
+        int start = 0;
+        for (int i = 0; i < sectionCount; i++) {
+            final int count = itemCounts[i];
+            mSectionStart[i] = start;
+            mItemCount[i] = count;
+            start += numColumns + count + (numColumns - count % numColumns) % numColumns;
+        }
+        mSectionStart[sectionCount] = start;
+    }
+
+    int getCount() {
+        return mSectionStart[mSectionCount];
+    }
+
+    int getSectionCount() {
+        return mSectionCount;
+    }
+
+    int getNumColumns() {
+        return mNumColumns;
+    }
+
+    /**
+     * @return the section holding the position
+     * @throws ArrayIndexOutOfBoundsException if the position is out of range
+     */
+    int getSection(int position) {
+        if (position < 0 || position >= getCount()) {
+            throw new ArrayIndexOutOfBoundsException(position);
+        }
+        final int index = Arrays.binarySearch(mSectionStart, 0, mSectionCount, position);
+        // A miss returns (-insertion point - 1) and the section is the one before it
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * @return the position of the header of the section
+     */
+    int getSectionStart(int section) {
+        return mSectionStart[section];
+    }
+
+    int getItemCount(int section) {
+        return mItemCount[section];
+    }
+
+    /**
+     * @return one of the <code>TYPE_*</code> constants for a position of the
+     *         given section
+     */
+    int getType(int position, int section) {
+        final int offset = position - mSectionStart[section];
+        if (offset < mNumColumns) {
+            return offset == 0 ? TYPE_SECTION_HEADER : TYPE_HEADER_PLACEHOLDER;
+        }
+        return offset - mNumColumns < mItemCount[section] ? TYPE_ITEM : TYPE_FILLER;
+    }
+
+    /**
+     * @return the index of an item position within its section
+     */
+    int getPositionInSection(int position, int section) {
+        return position - mSectionStart[section] - mNumColumns;
+    }
+
+    /**
+     * @return the row of a position; all sections start on a row boundary
+     */
+    int getRow(int position) {
+        return position / mNumColumns;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.database.DataSetObservable;
+import android.database.DataSetObserver;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Adapter contract for a {@link HeaderGridView} in sectioned mode. Items are
+ * grouped in sections and every section starts with a full-width section
+ * header row.
+ * <p>
+ * Section header views are recycled like normal cells, so
+ * {@link #getSectionHeaderView(int, View, ViewGroup)} should rebind the
+ * <code>convertView</code> it is given whenever it is not null.
+ * See {@link HeaderGridView#setSectionedAdapter(SectionedGridAdapter)}
+ */
+public abstract class SectionedGridAdapter {
+    private final DataSetObservable mDataSetObservable = new DataSetObservable();
+
+    public abstract int getSectionCount();
+
+    public abstract int getItemCount(int section);
+
+    public abstract Object getItem(int section, int position);
+
+    public long getItemId(int section, int position) {
+        return -1;
+    }
+
+    public boolean hasStableIds() {
+        return false;
+    }
+
+    public boolean isEnabled(int section, int position) {
+        return true;
+    }
+
+    /**
+     * @return the view type of an item, between 0 and
+     *         {@link #getItemViewTypeCount()} - 1
+     */
+    public int getItemViewType(int section, int position) {
+        return 0;
+    }
+
+    public int getItemViewTypeCount() {
+        return 1;
+    }
+
+    public abstract View getItemView(int section, int position, View convertView,
+            ViewGroup parent);
+
+    /**
+     * Get a view that displays the header of a section. This is called both
+     * for the header rows in the grid and for the header pinned at the top.
+     *
+     * @param section the section whose header is needed
+     * @param convertView an old section header view to reuse, or null
+     * @param parent the grid
+     */
+    public abstract View getSectionHeaderView(int section, View convertView,
+            ViewGroup parent);
+
+    public void registerDataSetObserver(DataSetObserver observer) {
+        mDataSetObservable.registerObserver(observer);
+    }
+
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+        mDataSetObservable.unregisterObserver(observer);
+    }
+
+    /**
+     * Notifies the attached grid that the sections or their items changed.
+     */
+    public void notifyDataSetChanged() {
+        mDataSetObservable.notifyChanged();
+    }
+
+    public void notifyDataSetInvalidated() {
+        mDataSetObservable.notifyInvalidated();
+    }
+}
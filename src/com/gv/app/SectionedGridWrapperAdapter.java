@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.database.DataSetObservable;
+import android.database.DataSetObserver;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.ListAdapter;
+
+/**
+ * ListAdapter used when a {@link HeaderGridView} is in sectioned mode. It
+ * flattens a {@link SectionedGridAdapter} into grid positions through a
+ * {@link SectionPositionMap}.
+ * <p>
+ * Section headers are handed out inside full-width containers that have a
+ * view type of their own, so the grid recycles them like normal cells instead
+ * of keeping one view alive per section.
+ */
+class SectionedGridWrapperAdapter implements ListAdapter {
+
+    private final DataSetObservable mDataSetObservable = new DataSetObservable();
+
+    // Rebuilds the section offsets before passing on changes of the wrapped
+    // adapter, so observers never see a stale map
+    private final DataSetObserver mAdapterObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            // This also covers a pending change of the number of columns
+            mNotifier.cancel();
+            rebuildPositionMap();
+            mDataSetObservable.notifyChanged();
+        }
+
+        @Override
+        public void onInvalidated() {
+            mNotifier.cancel();
+            rebuildPositionMap();
+            mDataSetObservable.notifyInvalidated();
+        }
+    };
+
+    private final CoalescedNotifier mNotifier;
+
+    private final HeaderFooterGridView mGrid;
+    private final SectionedGridAdapter mAdapter;
+    private final SectionPositionMap mPositionMap = new SectionPositionMap();
+    private int[] mItemCounts = new int[0];
+    private int mNumColumns = 1;
+    private int mObserverCount;
+
+    private final RowHeightCache mRowHeights = new RowHeightCache();
+
+    private FrameLayout mLastHeaderContainer;
+    private int mLastHeaderSection = -1;
+
+    public SectionedGridWrapperAdapter(HeaderFooterGridView grid, SectionedGridAdapter adapter) {
+        if (adapter == null) {
+            throw new IllegalArgumentException("adapter cannot be null");
+        }
+        mGrid = grid;
+        mAdapter = adapter;
+        mNotifier = new CoalescedNotifier(grid, new Runnable() {
+            @Override
+            public void run() {
+                rebuildPositionMap();
+                mDataSetObservable.notifyChanged();
+            }
+        });
+        rebuildPositionMap();
+    }
+
+    public SectionedGridAdapter getSectionedAdapter() {
+        return mAdapter;
+    }
+
+    SectionPositionMap getPositionMap() {
+        return mPositionMap;
+    }
+
+    public void setNumColumns(int numColumns) {
+        if (numColumns < 1) {
+            throw new IllegalArgumentException("Number of columns must be 1 or more");
+        }
+        if (mNumColumns != numColumns) {
+            mNumColumns = numColumns;
+            notifyDataSetChanged();
+        }
+    }
+
+    private void rebuildPositionMap() {
+        mRowHeights.invalidate();
+        final int sectionCount = mAdapter.getSectionCount();
+        if (mItemCounts.length < sectionCount) {
+            mItemCounts = new int[sectionCount];
+        }
+        for (int i = 0; i < sectionCount; i++) {
+            mItemCounts[i] = mAdapter.getItemCount(i);
+        }
+        mPositionMap.rebuild(mItemCounts, sectionCount, mNumColumns);
+    }
+
+    @Override
+    public int getCount() {
+        return mPositionMap.getCount();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mPositionMap.getSectionCount() == 0;
+    }
+
+    @Override
+    public boolean areAllItemsEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isEnabled(int position) {
+        // Out of range positions will throw an ArrayIndexOutOfBoundsException
+        final SectionPositionMap map = mPositionMap;
+        final int section = map.getSection(position);
+        if (map.getType(position, section) == SectionPositionMap.TYPE_ITEM) {
+            return mAdapter.isEnabled(section, map.getPositionInSection(position, section));
+        }
+        return false;
+    }
+
+    @Override
+    public Object getItem(int position) {
+        final SectionPositionMap map = mPositionMap;
+        final int section = map.getSection(position);
+        if (map.getType(position, section) == SectionPositionMap.TYPE_ITEM) {
+            return mAdapter.getItem(section, map.getPositionInSection(position, section));
+        }
+        return null;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        final SectionPositionMap map = mPositionMap;
+        if (position >= 0 && position < map.getCount()) {
+            final int section = map.getSection(position);
+            if (map.getType(position, section) == SectionPositionMap.TYPE_ITEM) {
+                return mAdapter.getItemId(section, map.getPositionInSection(position, section));
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return mAdapter.hasStableIds();
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        // Out of range positions will throw an ArrayIndexOutOfBoundsException
+        final SectionPositionMap map = mPositionMap;
+        final int section = map.getSection(position);
+        switch (map.getType(position, section)) {
+            case SectionPositionMap.TYPE_ITEM:
+                final View normalView = mAdapter.getItemView(section,
+                        map.getPositionInSection(position, section), convertView, parent);
+                mRowHeights.onCellObtained(map.getRow(position),
+                        position % map.getNumColumns() == 0, normalView);
+                return normalView;
+
+            case SectionPositionMap.TYPE_SECTION_HEADER:
+                return getSectionHeaderContainer(section, (FrameLayout) convertView, parent);
+
+            default:
+                PlaceholderView placeholder = (PlaceholderView) convertView;
+                if (placeholder == null) {
+                    placeholder = new PlaceholderView(parent.getContext());
+                    if (mGrid.getMetrics() != null) {
+                        mGrid.getMetrics().onPlaceholderAllocated();
+                    }
+                }
+                // We need to do this because GridView uses the height of the last item
+                // in a row to determine the height for the entire row.
+                final int numColumns = map.getNumColumns();
+                if (position % numColumns != numColumns - 1) {
+                    placeholder.setRowHeight(0);
+                } else if (map.getType(position, section) == SectionPositionMap.TYPE_FILLER) {
+                    placeholder.setRowHeight(mRowHeights.getRowHeight(map.getRow(position)));
+                } else {
+                    placeholder.setRowHeight(mLastHeaderSection == section
+                            ? mLastHeaderContainer.getMeasuredHeight() : 0);
+                }
+                return placeholder;
+        }
+    }
+
+    private View getSectionHeaderContainer(int section, FrameLayout container, ViewGroup parent) {
+        View oldHeader = null;
+        if (container == null) {
+            container = mGrid.createFixedViewContainer();
+        } else if (container.getChildCount() > 0) {
+            oldHeader = container.getChildAt(0);
+        }
+        final View header = mAdapter.getSectionHeaderView(section, oldHeader, parent);
+        if (header != oldHeader) {
+            container.removeAllViews();
+            container.addView(header);
+        }
+        // The grid lays out a row from left to right, so the placeholders that
+        // follow read the height of this container
+        mLastHeaderContainer = container;
+        mLastHeaderSection = section;
+        return container;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        final SectionPositionMap map = mPositionMap;
+        final int section = map.getSection(position);
+        final int itemTypes = mAdapter.getItemViewTypeCount();
+        switch (map.getType(position, section)) {
+            case SectionPositionMap.TYPE_ITEM:
+                return mAdapter.getItemViewType(section,
+                        map.getPositionInSection(position, section));
+            case SectionPositionMap.TYPE_SECTION_HEADER:
+                // Section headers get the type after the item types
+                return itemTypes;
+            default:
+                // Placeholders get the last view type number
+                return itemTypes + 1;
+        }
+    }
+
+    @Override
+    public int getViewTypeCount() {
+        return mAdapter.getItemViewTypeCount() + 2;
+    }
+
+    @Override
+    public void registerDataSetObserver(DataSetObserver observer) {
+        mDataSetObservable.registerObserver(observer);
+        if (mObserverCount++ == 0) {
+            mAdapter.registerDataSetObserver(mAdapterObserver);
+            // The wrapped adapter may have changed while nobody was listening
+            rebuildPositionMap();
+        }
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+        mDataSetObservable.unregisterObserver(observer);
+        if (--mObserverCount == 0) {
+            mAdapter.unregisterDataSetObserver(mAdapterObserver);
+        }
+    }
+
+    /**
+     * Notifies the grid that the number of columns changed. The notification
+     * is sent on the next frame at the latest.
+     */
+    public void notifyDataSetChanged() {
+        mNotifier.request();
+    }
+
+    /**
+     * Sends a pending notification now.
+     */
+    void flushPendingChanges() {
+        mNotifier.flush();
+    }
+
+    /**
+     * Called by the grid when its outermost batch update is committed.
+     */
+    void onBatchCommitted() {
+        mNotifier.onBatchCommitted();
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.content.Context;
+import android.database.DataSetObserver;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.ListAdapter;
+import android.widget.WrapperListAdapter;
+
+/**
+ * ListAdapter used when the adapter of a {@link HeaderFooterGridView} is a
+ * {@link ColumnSpanAdapter}. It lays the items out over grid positions
+ * through a {@link GridSpanTable}.
+ * <p>
+ * An item spanning several columns is handed out inside a container that
+ * is measured over those columns, followed by {@link PlaceholderView}s for
+ * the columns it covers and for the rest of its row. The last cell of such
+ * a row is always a placeholder, which gets the height of the tallest cell
+ * in the row, since GridView starts the next row below the last cell of a
+ * row. The grid moves the container over the columns it covers once they
+ * are laid out. The containers have view types of their own, one
+ * per item view type, so they are recycled with a cell of the right type in
+ * them. Range notifications of a {@link BaseGridAdapter} are passed on, and
+ * only the rows from the first changed item on are computed again.
+ */
+class SpannedGridWrapperAdapter implements WrapperListAdapter {
+
+    // Placeholders have no identity of their own, they all get the id of their column
+    private static final int PLACEHOLDER_ID_SERIAL = Integer.MAX_VALUE;
+
+    private final GridDataSetObservable mDataSetObservable = new GridDataSetObservable();
+
+    private final DataSetObserver mAdapterObserver = new GridDataSetObserver() {
+        @Override
+        public void onChanged() {
+            // This also covers a pending change of the number of columns
+            mNotifier.cancel();
+            resetTable(0);
+            mDataSetObservable.notifyChanged();
+        }
+
+        @Override
+        public void onInvalidated() {
+            mNotifier.cancel();
+            resetTable(0);
+            mDataSetObservable.notifyInvalidated();
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            if (mNotifier.cancel()) {
+                onChanged();
+                return;
+            }
+            final GridSpanTable table = mTable;
+            for (int i = positionStart; i < positionStart + itemCount; i++) {
+                if (table.getSpan(i) != table.clampSpan(getColumnSpan(i))) {
+                    // The rows from here on change, but not the number of items
+                    final int oldCount = table.getCount();
+                    final int gridStart = getRowStart(positionStart);
+                    table.invalidateFrom(positionStart);
+                    mRowHeights.invalidate();
+                    dispatchShift(gridStart, oldCount);
+                    return;
+                }
+            }
+            final int last = positionStart + itemCount - 1;
+            final int gridStart = table.getGridPosition(positionStart);
+            mDataSetObservable.notifyItemRangeChanged(gridStart,
+                    table.getGridPosition(last) + table.getSpan(last) - gridStart);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            onItemRangeMoved(positionStart);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            onItemRangeMoved(positionStart);
+        }
+
+        private void onItemRangeMoved(int positionStart) {
+            if (mNotifier.cancel()) {
+                onChanged();
+                return;
+            }
+            final int oldCount = mTable.getCount();
+            final int gridStart = getRowStart(positionStart);
+            resetTable(positionStart);
+            dispatchShift(gridStart, oldCount);
+        }
+    };
+
+    private final CoalescedNotifier mNotifier;
+
+    private final HeaderFooterGridView mGrid;
+    private final ListAdapter mAdapter;
+    private final ColumnSpanAdapter mSpanAdapter;
+    private final GridSpanTable mTable;
+    private int mObserverCount;
+
+    private final RowHeightCache mRowHeights = new RowHeightCache();
+
+    public SpannedGridWrapperAdapter(HeaderFooterGridView grid, ListAdapter adapter) {
+        if (!(adapter instanceof ColumnSpanAdapter)) {
+            throw new IllegalArgumentException("adapter must be a ColumnSpanAdapter");
+        }
+        mGrid = grid;
+        mAdapter = adapter;
+        mSpanAdapter = (ColumnSpanAdapter) adapter;
+        mTable = new GridSpanTable(new GridSpanTable.SpanLookup() {
+            @Override
+            public int getSpan(int item) {
+                return getColumnSpan(item);
+            }
+        });
+        mNotifier = new CoalescedNotifier(grid, new Runnable() {
+            @Override
+            public void run() {
+                resetTable(0);
+                mDataSetObservable.notifyChanged();
+            }
+        });
+        resetTable(0);
+    }
+
+    public void setNumColumns(int numColumns) {
+        if (numColumns < 1) {
+            throw new IllegalArgumentException("Number of columns must be 1 or more");
+        }
+        if (mTable.getNumColumns() != numColumns) {
+            mTable.setNumColumns(numColumns);
+            mRowHeights.invalidate();
+            mNotifier.request();
+        }
+    }
+
+    private int getColumnSpan(int position) {
+        return mSpanAdapter.getColumnSpan(position);
+    }
+
+    private void resetTable(int firstChangedItem) {
+        mRowHeights.invalidate();
+        mTable.setItemCount(mAdapter.getCount(), firstChangedItem);
+    }
+
+    /**
+     * @return the first position of the row the item is in, before anything changes
+     */
+    private int getRowStart(int item) {
+        final GridSpanTable table = mTable;
+        if (item <= 0 || table.getItemCount() == 0) {
+            return 0;
+        }
+        // The item may have just been inserted, so start from the one before it
+        final int previous = Math.min(item, table.getItemCount()) - 1;
+        final int position = table.getGridPosition(previous);
+        return position - position % table.getNumColumns();
+    }
+
+    private void dispatchShift(int gridStart, int oldCount) {
+        final int count = mTable.getCount();
+        if (count > oldCount) {
+            mDataSetObservable.notifyItemRangeInserted(gridStart, count - oldCount);
+        } else if (count < oldCount) {
+            mDataSetObservable.notifyItemRangeRemoved(gridStart, oldCount - count);
+        } else if (count > gridStart) {
+            mDataSetObservable.notifyItemRangeChanged(gridStart, count - gridStart);
+        }
+    }
+
+    @Override
+    public ListAdapter getWrappedAdapter() {
+        return mAdapter;
+    }
+
+    @Override
+    public int getCount() {
+        return mTable.getCount();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mAdapter.isEmpty();
+    }
+
+    @Override
+    public boolean areAllItemsEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isEnabled(int position) {
+        final int item = mTable.getItem(position);
+        return mTable.getType(position, item) == GridSpanTable.TYPE_ITEM
+                && mAdapter.isEnabled(item);
+    }
+
+    @Override
+    public Object getItem(int position) {
+        final int item = mTable.getItem(position);
+        if (mTable.getType(position, item) == GridSpanTable.TYPE_ITEM) {
+            return mAdapter.getItem(item);
+        }
+        return null;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        if (position < 0 || position >= getCount()) {
+            return -1;
+        }
+        final int item = mTable.getItem(position);
+        if (mTable.getType(position, item) == GridSpanTable.TYPE_ITEM) {
+            return mAdapter.getItemId(item);
+        }
+        return GridPositionMap.getFixedId(PLACEHOLDER_ID_SERIAL,
+                position % mTable.getNumColumns());
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return mAdapter.hasStableIds();
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        final GridSpanTable table = mTable;
+        final int item = table.getItem(position);
+        final int numColumns = table.getNumColumns();
+        if (table.getType(position, item) == GridSpanTable.TYPE_ITEM) {
+            final int span = table.getSpan(item);
+            final View cell = span == 1
+                    ? mAdapter.getView(item, convertView, parent)
+                    : getSpanContainer(item, span, (SpanCellLayout) convertView, parent);
+            mRowHeights.onCellObtained(table.getRow(position),
+                    position % numColumns == 0, cell);
+            return cell;
+        }
+
+        PlaceholderView placeholder = (PlaceholderView) convertView;
+        if (placeholder == null) {
+            placeholder = new PlaceholderView(parent.getContext());
+            if (mGrid.getMetrics() != null) {
+                mGrid.getMetrics().onPlaceholderAllocated();
+            }
+        }
+        // GridView uses the height of the last cell in a row for the entire row
+        placeholder.setRowHeight(position % numColumns == numColumns - 1
+                ? mRowHeights.getRowHeight(table.getRow(position)) : 0);
+        return placeholder;
+    }
+
+    private View getSpanContainer(int item, int span, SpanCellLayout container,
+            ViewGroup parent) {
+        View oldCell = null;
+        if (container == null) {
+            container = new SpanCellLayout(parent.getContext(), mGrid);
+        } else if (container.getChildCount() > 0) {
+            oldCell = container.getChildAt(0);
+        }
+        final View cell = mAdapter.getView(item, oldCell, container);
+        if (cell != oldCell) {
+            container.removeAllViews();
+            container.addView(cell);
+        }
+        container.setSpan(span);
+        return container;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        final GridSpanTable table = mTable;
+        final int item = table.getItem(position);
+        final int itemTypes = mAdapter.getViewTypeCount();
+        if (table.getType(position, item) != GridSpanTable.TYPE_ITEM) {
+            // Placeholders get the last view type number
+            return 2 * itemTypes;
+        }
+        final int type = mAdapter.getItemViewType(item);
+        if (type < 0) {
+            return type;
+        }
+        // Containers get the types after the item types
+        return table.getSpan(item) == 1 ? type : itemTypes + type;
+    }
+
+    @Override
+    public int getViewTypeCount() {
+        return 2 * mAdapter.getViewTypeCount() + 1;
+    }
+
+    @Override
+    public void registerDataSetObserver(DataSetObserver observer) {
+        mDataSetObservable.registerObserver(observer);
+        if (mObserverCount++ == 0) {
+            mAdapter.registerDataSetObserver(mAdapterObserver);
+            // The wrapped adapter may have changed while nobody was listening
+            resetTable(0);
+        }
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+        mDataSetObservable.unregisterObserver(observer);
+        if (--mObserverCount == 0) {
+            mAdapter.unregisterDataSetObserver(mAdapterObserver);
+        }
+    }
+
+    /**
+     * Sends a pending notification now.
+     */
+    void flushPendingChanges() {
+        mNotifier.flush();
+    }
+
+    /**
+     * Called by the grid when its outermost batch update is committed.
+     */
+    void onBatchCommitted() {
+        mNotifier.onBatchCommitted();
+    }
+
+    /**
+     * Holds a cell that spans several columns. It measures itself over
+     * those columns. GridView lays it out in its first column, and the grid
+     * then lines it up with the placeholders of the columns it covers, which
+     * come after it in the same row.
+     */
+    static class SpanCellLayout extends FrameLayout {
+        private final HeaderFooterGridView mGrid;
+        private int mSpan = 1;
+
+        public SpanCellLayout(Context context, HeaderFooterGridView grid) {
+            super(context);
+            mGrid = grid;
+        }
+
+        void setSpan(int span) {
+            if (mSpan != span) {
+                mSpan = span;
+                // The grid measures recycled children again only when they ask for it
+                forceLayout();
+            }
+        }
+
+        int getSpan() {
+            return mSpan;
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            final int columnWidth = MeasureSpec.getSize(widthMeasureSpec);
+            final int width = mSpan * columnWidth
+                    + (mSpan - 1) * mGrid.getHorizontalSpacingCompat();
+            super.onMeasure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                    heightMeasureSpec);
+        }
+    }
+}
@@ -0,0 +1,816 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.content.Context;
+import android.database.DataSetObserver;
+import android.support.v4.view.ViewCompat;
+import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.FrameLayout;
+import android.widget.ListAdapter;
+import android.widget.Scroller;
+
+import com.gv.app.HeaderFooterGridView.FixedViewInfo;
+
+import java.util.ArrayList;
+
+/**
+ * A grid of columns that are filled independently, for items whose heights
+ * differ, such as images of mixed aspect ratios. Each item goes to the
+ * column that is the shortest at that point, right below the item placed
+ * there before, so no row is stretched to its tallest cell.
+ * <p>
+ * Header views span the full width above the items, as in
+ * {@link HeaderGridView}. The positions handed to listeners count the
+ * headers first, and {@link #getAdapter()} returns a wrapper that resolves
+ * them, as in {@link HeaderGridView}.
+ * <p>
+ * The column and offset of every item laid out once are kept in a
+ * {@link StaggeredLayoutTable}. Items scrolled back into view are put back
+ * at their place and measured at the height they had, without placing them
+ * again. An item whose height changes must be reported through the adapter;
+ * with a {@link BaseGridAdapter}, only the items from the first changed one
+ * on are placed again.
+ * <p>
+ * GridView lays out rows, so this is a separate AdapterView rather than a
+ * mode of {@link HeaderGridView}. It scrolls vertically and does not support
+ * selection or keyboard navigation.
+ */
+public class StaggeredGridView extends AdapterView<ListAdapter> {
+
+    private static final int DEFAULT_NUM_COLUMNS = 2;
+
+    private static final int TOUCH_MODE_REST = 0;
+    private static final int TOUCH_MODE_DOWN = 1;
+    private static final int TOUCH_MODE_DRAGGING = 2;
+    private static final int TOUCH_MODE_FLINGING = 3;
+
+    private final ArrayList<FixedViewInfo> mHeaderViewInfos = new ArrayList<FixedViewInfo>();
+    private int mNextFixedViewSerial = 1;
+
+    private ListAdapter mAdapter;
+    private HeaderFooterViewGridAdapter mWrapper;
+
+    private final DataSetObserver mObserver = new GridDataSetObserver() {
+        @Override
+        public void onChanged() {
+            onDataChanged(0);
+        }
+
+        @Override
+        public void onInvalidated() {
+            onDataChanged(0);
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            onDataChanged(positionStart);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            onDataChanged(positionStart);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            onDataChanged(positionStart);
+        }
+    };
+
+    private final StaggeredLayoutTable mTable = new StaggeredLayoutTable();
+    private int mRequestedNumColumns = DEFAULT_NUM_COLUMNS;
+    private int mHorizontalSpacing;
+    private int mVerticalSpacing;
+    private int mColumnWidth;
+
+    private int mItemCount;
+    private boolean mDataChanged;
+    // The offset of the content at the top of the padded area
+    private int mScrollOffset;
+    private int mHeadersHeight;
+
+    // The children of the last layout pass by position, detached during a pass
+    private final SparseArray<View> mActiveViews = new SparseArray<View>();
+    // Items measured to be placed in this pass, not attached yet
+    private final SparseArray<View> mPlacedViews = new SparseArray<View>();
+    private final SparseArray<ArrayList<View>> mScrapViews = new SparseArray<ArrayList<View>>();
+
+    private final int mTouchSlop;
+    private final int mMinimumVelocity;
+    private final int mMaximumVelocity;
+    private final Scroller mScroller;
+    private VelocityTracker mVelocityTracker;
+    private int mTouchMode = TOUCH_MODE_REST;
+    // Whether the current gesture started by catching a fling, so it never clicks
+    private boolean mFlingCaught;
+    private float mMotionY;
+    private float mLastY;
+    private int mLastFlingY;
+
+    public StaggeredGridView(Context context) {
+        this(context, null);
+    }
+
+    public StaggeredGridView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public StaggeredGridView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        final ViewConfiguration configuration = ViewConfiguration.get(context);
+        mTouchSlop = configuration.getScaledTouchSlop();
+        mMinimumVelocity = configuration.getScaledMinimumFlingVelocity();
+        mMaximumVelocity = configuration.getScaledMaximumFlingVelocity();
+        mScroller = new Scroller(context);
+        setVerticalScrollBarEnabled(true);
+        setWillNotDraw(false);
+    }
+
+    /**
+     * Add a fixed view to appear at the top of the grid. If addHeaderView is
+     * called more than once, the views will appear in the order they were
+     * added.
+     *
+     * @param v The view to add.
+     * @param data Data to associate with this view
+     * @param isSelectable whether the item is selectable
+     */
+    public void addHeaderView(View v, Object data, boolean isSelectable) {
+        final FixedViewInfo info = new FixedViewInfo();
+        final FrameLayout fl = new FrameLayout(getContext());
+        fl.addView(v);
+        info.view = v;
+        info.viewContainer = fl;
+        info.data = data;
+        info.isSelectable = isSelectable;
+        info.serial = mNextFixedViewSerial++;
+        mHeaderViewInfos.add(info);
+        if (mWrapper != null) {
+            mWrapper.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Add a fixed view to appear at the top of the grid.
+     *
+     * @param v The view to add.
+     */
+    public void addHeaderView(View v) {
+        addHeaderView(v, null, true);
+    }
+
+    /**
+     * Removes a previously-added header view.
+     *
+     * @return true if the view was removed, false if the view was not a header
+     *         view
+     */
+    public boolean removeHeaderView(View v) {
+        if (mWrapper != null) {
+            return mWrapper.removeHeader(v);
+        }
+        for (int i = 0; i < mHeaderViewInfos.size(); i++) {
+            if (mHeaderViewInfos.get(i).view == v) {
+                mHeaderViewInfos.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getHeaderViewCount() {
+        return mHeaderViewInfos.size();
+    }
+
+    /**
+     * @param numColumns the number of columns, 1 or more
+     */
+    public void setNumColumns(int numColumns) {
+        if (numColumns < 1) {
+            throw new IllegalArgumentException("Number of columns must be 1 or more");
+        }
+        if (mRequestedNumColumns != numColumns) {
+            mRequestedNumColumns = numColumns;
+            requestLayout();
+        }
+    }
+
+    public int getNumColumns() {
+        return mRequestedNumColumns;
+    }
+
+    /**
+     * @param horizontalSpacing the space between columns, in pixels
+     */
+    public void setHorizontalSpacing(int horizontalSpacing) {
+        if (mHorizontalSpacing != horizontalSpacing) {
+            mHorizontalSpacing = horizontalSpacing;
+            requestLayout();
+        }
+    }
+
+    /**
+     * @param verticalSpacing the space between the items of a column, in pixels
+     */
+    public void setVerticalSpacing(int verticalSpacing) {
+        if (mVerticalSpacing != verticalSpacing) {
+            mVerticalSpacing = verticalSpacing;
+            requestLayout();
+        }
+    }
+
+    /**
+     * @return the width of a column figured out in the last measure pass
+     */
+    public int getColumnWidth() {
+        return mColumnWidth;
+    }
+
+    @Override
+    public ListAdapter getAdapter() {
+        return mWrapper;
+    }
+
+    @Override
+    public void setAdapter(ListAdapter adapter) {
+        if (mWrapper != null) {
+            mWrapper.unregisterDataSetObserver(mObserver);
+        }
+        clearViews();
+        mAdapter = adapter;
+        mScrollOffset = 0;
+        mTable.clear();
+        if (adapter != null) {
+            mWrapper = new HeaderFooterViewGridAdapter(null, mHeaderViewInfos,
+                    new ArrayList<FixedViewInfo>(), adapter);
+            mWrapper.registerDataSetObserver(mObserver);
+            mItemCount = adapter.getCount();
+        } else {
+            mWrapper = null;
+            mItemCount = 0;
+        }
+        mDataChanged = true;
+        requestLayout();
+        invalidate();
+    }
+
+    private void onDataChanged(int firstChangedPosition) {
+        mItemCount = mAdapter.getCount();
+        // Items before the first changed one keep their place
+        mTable.invalidateFrom(firstChangedPosition - mWrapper.getHeadersCount());
+        mDataChanged = true;
+        requestLayout();
+    }
+
+    @Override
+    public int getCount() {
+        return mWrapper != null ? mWrapper.getCount() : 0;
+    }
+
+    @Override
+    public View getSelectedView() {
+        return null;
+    }
+
+    /**
+     * Scrolls to the position, if it was laid out before. Positions count
+     * the headers first.
+     */
+    @Override
+    public void setSelection(int position) {
+        if (mWrapper == null || position < 0) {
+            return;
+        }
+        final int headerCount = mWrapper.getHeadersCount();
+        if (position < headerCount) {
+            mScrollOffset = 0;
+        } else if (position - headerCount < mTable.getPlacedCount()) {
+            mScrollOffset = mHeadersHeight + mTable.getTop(position - headerCount);
+        }
+        requestLayout();
+    }
+
+    @Override
+    public int getFirstVisiblePosition() {
+        int first = INVALID_POSITION;
+        for (int i = 0; i < getChildCount(); i++) {
+            final int position = getChildPosition(getChildAt(i));
+            if (first == INVALID_POSITION || position < first) {
+                first = position;
+            }
+        }
+        return first;
+    }
+
+    @Override
+    public int getLastVisiblePosition() {
+        int last = INVALID_POSITION;
+        for (int i = 0; i < getChildCount(); i++) {
+            last = Math.max(last, getChildPosition(getChildAt(i)));
+        }
+        return last;
+    }
+
+    @Override
+    public int getPositionForView(View view) {
+        View child = view;
+        while (child.getParent() instanceof View && child.getParent() != this) {
+            child = (View) child.getParent();
+        }
+        return child.getParent() == this ? getChildPosition(child) : INVALID_POSITION;
+    }
+
+    private static int getChildPosition(View child) {
+        return ((LayoutParams) child.getLayoutParams()).position;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int height = MeasureSpec.getSize(heightMeasureSpec);
+        if (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            width = getSuggestedMinimumWidth();
+        }
+        if (MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            height = getSuggestedMinimumHeight();
+        }
+        setMeasuredDimension(width, height);
+
+        final int numColumns = mRequestedNumColumns;
+        final int columnWidth = Math.max(0, (width - getPaddingLeft() - getPaddingRight()
+                - (numColumns - 1) * mHorizontalSpacing) / numColumns);
+        if (columnWidth != mColumnWidth) {
+            // The heights of the items follow their width
+            mColumnWidth = columnWidth;
+            mTable.clear();
+        }
+        mTable.setColumns(numColumns, mVerticalSpacing);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        layoutChildren();
+    }
+
+    /**
+     * Lays out the headers and items visible at the scroll offset, placing
+     * the items that were not placed yet.
+     */
+    private void layoutChildren() {
+        final int childCount = getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            final View child = getChildAt(i);
+            mActiveViews.put(getChildPosition(child), child);
+        }
+        detachAllViewsFromParent();
+        if (mDataChanged) {
+            // Every cell may show something else now
+            recycleActiveViews();
+            mDataChanged = false;
+        }
+        if (mWrapper == null) {
+            return;
+        }
+
+        final int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        final int viewportHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+        measureHeaders(width);
+        placeItems(mScrollOffset + viewportHeight - mHeadersHeight);
+        if (mTable.getPlacedCount() == mItemCount) {
+            // Everything is placed, so the end of the content is known
+            final int maxOffset = Math.max(0,
+                    mHeadersHeight + mTable.getContentHeight() - viewportHeight);
+            mScrollOffset = Math.min(mScrollOffset, maxOffset);
+        }
+        final int top = mScrollOffset;
+        layoutHeaders(width, top, top + viewportHeight);
+        layoutItems(top - mHeadersHeight, top + viewportHeight - mHeadersHeight);
+
+        recycleActiveViews();
+        for (int i = mPlacedViews.size() - 1; i >= 0; i--) {
+            addScrapView(mPlacedViews.valueAt(i));
+        }
+        mPlacedViews.clear();
+        invalidate();
+    }
+
+    /**
+     * Measures the headers that need it, which gives the offset of the items.
+     */
+    private void measureHeaders(int width) {
+        final int headerCount = mWrapper.getHeadersCount();
+        int offset = 0;
+        for (int position = 0; position < headerCount; position++) {
+            View header = mActiveViews.get(position);
+            if (header == null) {
+                // Header containers are kept by the wrapper, detached or not
+                header = obtainView(position, null);
+            }
+            if (header.isLayoutRequested() || header.getMeasuredWidth() != width) {
+                final LayoutParams lp = (LayoutParams) header.getLayoutParams();
+                header.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                        lp.height >= 0
+                                ? MeasureSpec.makeMeasureSpec(lp.height, MeasureSpec.EXACTLY)
+                                : MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+            }
+            offset += header.getMeasuredHeight();
+        }
+        mHeadersHeight = offset;
+    }
+
+    private void layoutHeaders(int width, int top, int bottom) {
+        final int headerCount = mWrapper.getHeadersCount();
+        int offset = 0;
+        for (int position = 0; position < headerCount; position++) {
+            View header = mActiveViews.get(position);
+            final boolean active = header != null;
+            if (active) {
+                mActiveViews.remove(position);
+            } else {
+                header = obtainView(position, null);
+            }
+            final int height = header.getMeasuredHeight();
+            if (offset + height > top && offset < bottom) {
+                final int childTop = getPaddingTop() + offset - top;
+                attachChild(header, active);
+                header.layout(getPaddingLeft(), childTop, getPaddingLeft() + width,
+                        childTop + height);
+            } else if (active) {
+                removeDetachedView(header, false);
+            }
+            offset += height;
+        }
+    }
+
+    /**
+     * Places items until every column reaches the offset, in item coordinates.
+     */
+    private void placeItems(int bottom) {
+        final StaggeredLayoutTable table = mTable;
+        final int headerCount = mWrapper.getHeadersCount();
+        while (table.getPlacedCount() < mItemCount && table.getLowestBottom() < bottom) {
+            final int position = headerCount + table.getPlacedCount();
+            View child = mActiveViews.get(position);
+            if (child != null) {
+                // Placed before a change, but its height may have changed with it
+                mActiveViews.remove(position);
+                removeDetachedView(child, false);
+                child = obtainView(position, child);
+            } else {
+                child = obtainView(position);
+            }
+            measureItem(child, -1);
+            table.placeNext(child.getMeasuredHeight());
+            mPlacedViews.put(position, child);
+        }
+    }
+
+    private void layoutItems(int top, int bottom) {
+        final StaggeredLayoutTable table = mTable;
+        final int headerCount = mWrapper.getHeadersCount();
+        final int placedCount = table.getPlacedCount();
+        for (int item = table.getFirstItemBelow(Math.max(0, top));
+                item < placedCount && table.getTop(item) < bottom; item++) {
+            final int itemTop = table.getTop(item);
+            final int height = table.getHeight(item);
+            if (itemTop + height <= top) {
+                continue;
+            }
+            final int position = headerCount + item;
+            View child = mActiveViews.get(position);
+            boolean active = child != null;
+            if (active) {
+                mActiveViews.remove(position);
+            } else {
+                child = mPlacedViews.get(position);
+                if (child != null) {
+                    mPlacedViews.remove(position);
+                } else {
+                    child = obtainView(position);
+                }
+            }
+            if (child.getMeasuredHeight() != height || child.isLayoutRequested()) {
+                // Placed before; its height is known and not measured again
+                measureItem(child, height);
+            }
+            attachChild(child, active);
+            final int column = table.getColumn(item);
+            final int childLeft = getPaddingLeft() + column * (mColumnWidth + mHorizontalSpacing);
+            final int childTop = getPaddingTop() + mHeadersHeight + itemTop - mScrollOffset;
+            child.layout(childLeft, childTop, childLeft + mColumnWidth, childTop + height);
+        }
+    }
+
+    private void measureItem(View child, int height) {
+        final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+        final int heightMeasureSpec;
+        if (height >= 0) {
+            heightMeasureSpec = MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY);
+        } else if (lp.height >= 0) {
+            heightMeasureSpec = MeasureSpec.makeMeasureSpec(lp.height, MeasureSpec.EXACTLY);
+        } else {
+            heightMeasureSpec = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+        }
+        child.measure(MeasureSpec.makeMeasureSpec(mColumnWidth, MeasureSpec.EXACTLY),
+                heightMeasureSpec);
+    }
+
+    private void attachChild(View child, boolean active) {
+        if (active) {
+            attachViewToParent(child, -1, child.getLayoutParams());
+        } else {
+            addViewInLayout(child, -1, child.getLayoutParams());
+        }
+    }
+
+    private View obtainView(int position) {
+        final int viewType = mWrapper.getItemViewType(position);
+        View scrap = null;
+        if (viewType >= 0) {
+            final ArrayList<View> scrapViews = mScrapViews.get(viewType);
+            if (scrapViews != null && !scrapViews.isEmpty()) {
+                scrap = scrapViews.remove(scrapViews.size() - 1);
+            }
+        }
+        return obtainView(position, scrap);
+    }
+
+    private View obtainView(int position, View convertView) {
+        final View child = mWrapper.getView(position, convertView, this);
+        if (convertView != null && child != convertView) {
+            addScrapView(convertView);
+        }
+        final ViewGroup.LayoutParams params = child.getLayoutParams();
+        final LayoutParams lp;
+        if (params instanceof LayoutParams) {
+            lp = (LayoutParams) params;
+        } else {
+            lp = params != null ? new LayoutParams(params)
+                    : new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
+            child.setLayoutParams(lp);
+        }
+        lp.position = position;
+        lp.viewType = mWrapper.getItemViewType(position);
+        return child;
+    }
+
+    private void addScrapView(View view) {
+        final int viewType = ((LayoutParams) view.getLayoutParams()).viewType;
+        if (viewType < 0) {
+            // Header containers belong to the wrapper
+            return;
+        }
+        ArrayList<View> scrapViews = mScrapViews.get(viewType);
+        if (scrapViews == null) {
+            scrapViews = new ArrayList<View>();
+            mScrapViews.put(viewType, scrapViews);
+        }
+        scrapViews.add(view);
+    }
+
+    private void recycleActiveViews() {
+        for (int i = mActiveViews.size() - 1; i >= 0; i--) {
+            final View child = mActiveViews.valueAt(i);
+            removeDetachedView(child, false);
+            addScrapView(child);
+        }
+        mActiveViews.clear();
+    }
+
+    private void clearViews() {
+        removeAllViewsInLayout();
+        mActiveViews.clear();
+        mPlacedViews.clear();
+        mScrapViews.clear();
+    }
+
+    /**
+     * Scrolls the content by the distance and lays it out again.
+     *
+     * @return whether the content moved
+     */
+    private boolean trackMotionScroll(int distance) {
+        final int oldOffset = mScrollOffset;
+        mScrollOffset = Math.max(0, mScrollOffset + distance);
+        layoutChildren();
+        if (mScrollOffset == oldOffset) {
+            return false;
+        }
+        if (!awakenScrollBars()) {
+            invalidate();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        switch (ev.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                startMotion(ev);
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (mTouchMode == TOUCH_MODE_DOWN && Math.abs(ev.getY() - mMotionY) > mTouchSlop) {
+                    startDragging(ev);
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                mTouchMode = TOUCH_MODE_REST;
+                break;
+        }
+        return mTouchMode == TOUCH_MODE_DRAGGING;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent ev) {
+        if (mVelocityTracker == null) {
+            mVelocityTracker = VelocityTracker.obtain();
+        }
+        mVelocityTracker.addMovement(ev);
+        switch (ev.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                // onInterceptTouchEvent() sees the down first, and a fling it
+                // caught must not be taken for a tap here
+                if (!mFlingCaught) {
+                    startMotion(ev);
+                }
+                mFlingCaught = false;
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (mTouchMode == TOUCH_MODE_DOWN && Math.abs(ev.getY() - mMotionY) > mTouchSlop) {
+                    startDragging(ev);
+                }
+                if (mTouchMode == TOUCH_MODE_DRAGGING) {
+                    trackMotionScroll((int) (mLastY - ev.getY()));
+                    mLastY = ev.getY();
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+                if (mTouchMode == TOUCH_MODE_DRAGGING) {
+                    mVelocityTracker.computeCurrentVelocity(1000, mMaximumVelocity);
+                    final int velocity = (int) mVelocityTracker.getYVelocity();
+                    if (Math.abs(velocity) > mMinimumVelocity) {
+                        mTouchMode = TOUCH_MODE_FLINGING;
+                        mLastFlingY = 0;
+                        mScroller.fling(0, 0, 0, -velocity, 0, 0,
+                                Integer.MIN_VALUE, Integer.MAX_VALUE);
+                        ViewCompat.postInvalidateOnAnimation(this);
+                    } else {
+                        mTouchMode = TOUCH_MODE_REST;
+                    }
+                } else if (mTouchMode == TOUCH_MODE_DOWN) {
+                    mTouchMode = TOUCH_MODE_REST;
+                    performClickAt(ev.getX(), ev.getY());
+                }
+                recycleVelocityTracker();
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                mTouchMode = TOUCH_MODE_REST;
+                recycleVelocityTracker();
+                break;
+        }
+        return true;
+    }
+
+    private void startMotion(MotionEvent ev) {
+        mMotionY = mLastY = ev.getY();
+        mFlingCaught = mTouchMode == TOUCH_MODE_FLINGING;
+        if (mFlingCaught) {
+            // Catching a fling goes straight to dragging
+            mScroller.abortAnimation();
+            mTouchMode = TOUCH_MODE_DRAGGING;
+        } else {
+            mTouchMode = TOUCH_MODE_DOWN;
+        }
+    }
+
+    private void startDragging(MotionEvent ev) {
+        mTouchMode = TOUCH_MODE_DRAGGING;
+        mLastY = ev.getY();
+        if (getParent() != null) {
+            getParent().requestDisallowInterceptTouchEvent(true);
+        }
+    }
+
+    private void recycleVelocityTracker() {
+        if (mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+    }
+
+    private void performClickAt(float x, float y) {
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            final View child = getChildAt(i);
+            if (x >= child.getLeft() && x < child.getRight()
+                    && y >= child.getTop() && y < child.getBottom()) {
+                final int position = getChildPosition(child);
+                if (mWrapper.isEnabled(position)) {
+                    performItemClick(child, position, mWrapper.getItemId(position));
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void computeScroll() {
+        if (mTouchMode != TOUCH_MODE_FLINGING) {
+            return;
+        }
+        if (mScroller.computeScrollOffset()) {
+            final int y = mScroller.getCurrY();
+            final int distance = y - mLastFlingY;
+            mLastFlingY = y;
+            if (trackMotionScroll(distance) || distance == 0) {
+                ViewCompat.postInvalidateOnAnimation(this);
+                return;
+            }
+            // Hit an end of the content
+            mScroller.abortAnimation();
+        }
+        mTouchMode = TOUCH_MODE_REST;
+    }
+
+    @Override
+    protected int computeVerticalScrollExtent() {
+        return getHeight() - getPaddingTop() - getPaddingBottom();
+    }
+
+    @Override
+    protected int computeVerticalScrollOffset() {
+        return mScrollOffset;
+    }
+
+    @Override
+    protected int computeVerticalScrollRange() {
+        final int placedCount = mTable.getPlacedCount();
+        int contentHeight = mTable.getContentHeight();
+        if (placedCount > 0 && placedCount < mItemCount) {
+            // Guesses the rest from the items placed so far
+            contentHeight = (int) ((long) contentHeight * mItemCount / placedCount);
+        }
+        return mHeadersHeight + contentHeight;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mScroller.abortAnimation();
+        mTouchMode = TOUCH_MODE_REST;
+    }
+
+    @Override
+    protected ViewGroup.LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    protected ViewGroup.LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+        return new LayoutParams(p);
+    }
+
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+        return p instanceof LayoutParams;
+    }
+
+    /**
+     * Layout parameters of the cells, which remember what the cell was
+     * obtained for.
+     */
+    public static class LayoutParams extends ViewGroup.LayoutParams {
+        int position = INVALID_POSITION;
+        int viewType;
+
+        public LayoutParams(int width, int height) {
+            super(width, height);
+        }
+
+        public LayoutParams(ViewGroup.LayoutParams source) {
+            super(source);
+        }
+    }
+}
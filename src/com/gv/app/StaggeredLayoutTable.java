@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import java.util.Arrays;
+
+/**
+ * Places the items of a {@link StaggeredGridView}: each item goes to the
+ * column whose bottom is highest, right below the item placed there before.
+ * <p>
+ * The column, top and height of every placed item are kept in primitive
+ * arrays, so the layout of items scrolled back into view is read from here
+ * instead of measuring and placing them again. Since an item always starts
+ * at the lowest bottom so far, the tops never decrease with the position,
+ * and the items at an offset are found with a binary search.
+ */
+final class StaggeredLayoutTable {
+
+    private int mNumColumns = 1;
+    private int mVerticalSpacing;
+
+    // Only the first mPlacedCount entries are valid
+    private int[] mColumn = new int[0];
+    private int[] mTop = new int[0];
+    private int[] mHeight = new int[0];
+    private int mPlacedCount;
+
+    // The offset where the next item of each column starts
+    private int[] mColumnBottom = new int[1];
+    // Scratch space for the walks back over the last item of each column
+    private boolean[] mColumnSeen = new boolean[1];
+
+    /**
+     * Sets the number of columns and the spacing between items of a column,
+     * dropping every placed item if they changed.
+     */
+    void setColumns(int numColumns, int verticalSpacing) {
+        if (numColumns < 1) {
+            throw new IllegalArgumentException("Number of columns must be 1 or more");
+        }
+        if (mNumColumns != numColumns || mVerticalSpacing != verticalSpacing) {
+            mNumColumns = numColumns;
+            mVerticalSpacing = verticalSpacing;
+            mColumnBottom = new int[numColumns];
+            mColumnSeen = new boolean[numColumns];
+            clear();
+        }
+    }
+
+    int getNumColumns() {
+        return mNumColumns;
+    }
+
+    /**
+     * Drops every placed item, e.g. after the data changed.
+     */
+    void clear() {
+        invalidateFrom(0);
+    }
+
+    /**
+     * Drops the items from the position on, so that they are measured and
+     * placed again. The items before it keep their place.
+     */
+    void invalidateFrom(int position) {
+        mPlacedCount = Math.max(0, Math.min(mPlacedCount, position));
+        Arrays.fill(mColumnBottom, 0);
+        // The bottom of a column is the one of its last item still placed
+        final boolean[] seen = mColumnSeen;
+        Arrays.fill(seen, false);
+        int remaining = mNumColumns;
+        for (int i = mPlacedCount - 1; i >= 0 && remaining > 0; i--) {
+            final int column = mColumn[i];
+            if (!seen[column]) {
+                seen[column] = true;
+                remaining--;
+                mColumnBottom[column] = mTop[i] + mHeight[i] + mVerticalSpacing;
+            }
+        }
+    }
+
+    /**
+     * @return the number of items placed so far, which are the first ones
+     */
+    int getPlacedCount() {
+        return mPlacedCount;
+    }
+
+    /**
+     * @return the column the next item is placed in
+     */
+    int getNextColumn() {
+        int column = 0;
+        for (int i = 1; i < mNumColumns; i++) {
+            if (mColumnBottom[i] < mColumnBottom[column]) {
+                column = i;
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Places the next item.
+     *
+     * @param height the measured height of the item
+     */
+    void placeNext(int height) {
+        final int position = mPlacedCount;
+        if (position == mTop.length) {
+            final int capacity = Math.max(16, position * 2);
+            mColumn = Arrays.copyOf(mColumn, capacity);
+            mTop = Arrays.copyOf(mTop, capacity);
+            mHeight = Arrays.copyOf(mHeight, capacity);
+        }
+        final int column = getNextColumn();
+        mColumn[position] = column;
+        mTop[position] = mColumnBottom[column];
+        mHeight[position] = height;
+        mColumnBottom[column] += height + mVerticalSpacing;
+        mPlacedCount++;
+    }
+
+    int getColumn(int position) {
+        return mColumn[position];
+    }
+
+    int getTop(int position) {
+        return mTop[position];
+    }
+
+    int getHeight(int position) {
+        return mHeight[position];
+    }
+
+    /**
+     * @return the offset the next item would be placed at, which is where
+     *         the placed items leave a gap
+     */
+    int getLowestBottom() {
+        return mColumnBottom[getNextColumn()];
+    }
+
+    /**
+     * @return the bottom of the longest column, without the trailing spacing
+     */
+    int getContentHeight() {
+        int bottom = 0;
+        for (int i = 0; i < mNumColumns; i++) {
+            bottom = Math.max(bottom, mColumnBottom[i]);
+        }
+        return Math.max(0, bottom - mVerticalSpacing);
+    }
+
+    /**
+     * @return the first placed item that reaches below the offset, or the
+     *         number of placed items if none does
+     */
+    int getFirstItemBelow(int offset) {
+        final int low = getFirstItemAtOrAfter(offset);
+        // Earlier items may still reach below it; only the last one of each
+        // column before it can, since the others end above that one's top
+        int first = low;
+        int remaining = mNumColumns;
+        final boolean[] seen = mColumnSeen;
+        Arrays.fill(seen, false);
+        for (int i = low - 1; i >= 0 && remaining > 0; i--) {
+            final int column = mColumn[i];
+            if (!seen[column]) {
+                seen[column] = true;
+                remaining--;
+                if (mTop[i] + mHeight[i] > offset) {
+                    first = i;
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * @return the first placed item starting at or below the offset, or the
+     *         number of placed items if none does
+     */
+    int getFirstItemAtOrAfter(int offset) {
+        int low = 0;
+        int high = mPlacedCount;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (mTop[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
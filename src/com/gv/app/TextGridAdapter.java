@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.graphics.Paint;
+import android.support.v4.util.LruCache;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * A {@link BaseGridAdapter} whose cells show text, with the text layouts
+ * built ahead of time on a background executor.
+ * <p>
+ * Whenever the grid reports the visible items, the layouts of the items
+ * around them are built for the text width of a cell, which follows from
+ * the column width the grid figured out. Binding a cell then hands it the
+ * layout, and the {@link TextLayoutView} draws it without measuring or
+ * breaking the text. An item asked for before its layout is ready gets one
+ * built on the spot.
+ * <p>
+ * Data changes must go through the adapter's notify methods, which drop the
+ * layouts that became stale.
+ */
+public abstract class TextGridAdapter extends BaseGridAdapter
+        implements GridVisibleRangeListener {
+
+    private static Executor sDefaultExecutor;
+
+    private static final class TextEntry {
+        final Layout layout;
+        final int width;
+        final int generation;
+
+        TextEntry(Layout layout, int width, int generation) {
+            this.layout = layout;
+            this.width = width;
+            this.generation = generation;
+        }
+    }
+
+    private final HeaderFooterGridView mGrid;
+    private final LruCache<Integer, TextEntry> mLayouts;
+    private final Executor mExecutor;
+    private final TextPaint mPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private Layout.Alignment mAlignment = Layout.Alignment.ALIGN_NORMAL;
+    private int mHorizontalPadding;
+
+    // Incremented when the data changes, so stale layouts are not cached
+    private volatile int mGeneration;
+    // Incremented when the visible range changes, so outdated work stops
+    private volatile int mRangeSerial;
+
+    /**
+     * @param grid the grid the adapter is set on, which tells the column width
+     * @param maxLayouts the most text layouts to keep
+     */
+    protected TextGridAdapter(HeaderFooterGridView grid, int maxLayouts) {
+        this(grid, maxLayouts, getDefaultExecutor());
+    }
+
+    /**
+     * @param grid the grid the adapter is set on, which tells the column width
+     * @param maxLayouts the most text layouts to keep
+     * @param executor the executor to build the layouts on
+     */
+    protected TextGridAdapter(HeaderFooterGridView grid, int maxLayouts, Executor executor) {
+        if (grid == null || executor == null) {
+            throw new IllegalArgumentException("grid and executor must not be null");
+        }
+        mGrid = grid;
+        mLayouts = new LruCache<Integer, TextEntry>(maxLayouts);
+        mExecutor = executor;
+        mPaint.density = grid.getResources().getDisplayMetrics().density;
+    }
+
+    private static synchronized Executor getDefaultExecutor() {
+        if (sDefaultExecutor == null) {
+            sDefaultExecutor = Executors.newSingleThreadExecutor();
+        }
+        return sDefaultExecutor;
+    }
+
+    /**
+     * Gets the text of an item. Called on the main thread and on the
+     * background executor, so the data must be safe to read from both.
+     */
+    protected abstract CharSequence getText(int position);
+
+    /**
+     * @return the paint the cells draw their text with; call
+     *         {@link #notifyDataSetChanged()} after changing it
+     */
+    public TextPaint getTextPaint() {
+        return mPaint;
+    }
+
+    public void setAlignment(Layout.Alignment alignment) {
+        if (mAlignment != alignment) {
+            mAlignment = alignment;
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Sets the left and right padding of the cells together, which the text
+     * width leaves out.
+     */
+    public void setCellHorizontalPadding(int horizontalPadding) {
+        if (mHorizontalPadding != horizontalPadding) {
+            mHorizontalPadding = horizontalPadding;
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Creates a cell. Override to set padding or a background; the padding
+     * must match {@link #setCellHorizontalPadding(int)}.
+     */
+    protected TextLayoutView newCell(ViewGroup parent) {
+        final TextLayoutView cell = new TextLayoutView(parent.getContext());
+        cell.getPaint().set(mPaint);
+        cell.setAlignment(mAlignment);
+        return cell;
+    }
+
+    /**
+     * Binds what else than the text the cell shows. Does nothing by default.
+     */
+    protected void bindCell(int position, TextLayoutView cell) {
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        final TextLayoutView cell = convertView instanceof TextLayoutView
+                ? (TextLayoutView) convertView : newCell(parent);
+        final Layout layout = getTextLayout(position);
+        if (layout != null) {
+            cell.setTextLayout(layout);
+        } else {
+            cell.setText(getText(position));
+        }
+        bindCell(position, cell);
+        return cell;
+    }
+
+    /**
+     * @return the text layout of the item, built now if it was not built
+     *         ahead, or null before the grid knows its column width
+     */
+    public Layout getTextLayout(int position) {
+        final int width = getTextWidth();
+        if (width <= 0) {
+            return null;
+        }
+        final int generation = mGeneration;
+        final TextEntry entry = mLayouts.get(position);
+        if (entry != null && entry.width == width && entry.generation == generation) {
+            return entry.layout;
+        }
+        final Layout layout = TextLayoutView.makeLayout(getText(position), mPaint, width,
+                mAlignment);
+        mLayouts.put(position, new TextEntry(layout, width, generation));
+        return layout;
+    }
+
+    private int getTextWidth() {
+        return mGrid.getExpectedColumnWidth() - mHorizontalPadding;
+    }
+
+    @Override
+    public void onVisibleRangeChanged(final int firstPosition, final int lastPosition) {
+        final int width = getTextWidth();
+        if (firstPosition < 0 || width <= 0) {
+            return;
+        }
+        // As many items as are visible, on either side
+        final int visibleCount = lastPosition - firstPosition + 1;
+        final int start = Math.max(0, firstPosition - visibleCount);
+        final int end = Math.min(getCount() - 1, lastPosition + visibleCount);
+        final int generation = mGeneration;
+        final int serial = ++mRangeSerial;
+        // Paints are not safe to share between threads. TextPaint.set() also
+        // copies the density, which the Paint copy constructor leaves out.
+        final TextPaint paint = new TextPaint();
+        paint.set(mPaint);
+        final Layout.Alignment alignment = mAlignment;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // The items below come into view first when scrolling down
+                for (int i = lastPosition + 1; i <= end; i++) {
+                    if (!precompute(i, width, generation, serial, paint, alignment)) {
+                        return;
+                    }
+                }
+                for (int i = firstPosition - 1; i >= start; i--) {
+                    if (!precompute(i, width, generation, serial, paint, alignment)) {
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the layout of an item on the executor.
+     *
+     * @return false if the work became outdated and should stop
+     */
+    private boolean precompute(int position, int width, int generation, int serial,
+            TextPaint paint, Layout.Alignment alignment) {
+        if (serial != mRangeSerial || generation != mGeneration) {
+            return false;
+        }
+        final TextEntry entry = mLayouts.get(position);
+        if (entry != null && entry.width == width && entry.generation == generation) {
+            return true;
+        }
+        final Layout layout = TextLayoutView.makeLayout(getText(position), paint, width,
+                alignment);
+        // The notify methods drop layouts under the same lock, so a layout of
+        // the old text cannot be put back right after they dropped it
+        synchronized (mLayouts) {
+            if (serial != mRangeSerial || generation != mGeneration) {
+                // The text may have changed while the layout was built
+                return false;
+            }
+            mLayouts.put(position, new TextEntry(layout, width, generation));
+        }
+        return true;
+    }
+
+    private void dropLayouts() {
+        synchronized (mLayouts) {
+            mGeneration++;
+            mLayouts.evictAll();
+        }
+    }
+
+    @Override
+    public void notifyDataSetChanged() {
+        dropLayouts();
+        super.notifyDataSetChanged();
+    }
+
+    @Override
+    public void notifyDataSetInvalidated() {
+        dropLayouts();
+        super.notifyDataSetInvalidated();
+    }
+
+    @Override
+    public void notifyItemChanged(int position) {
+        synchronized (mLayouts) {
+            mRangeSerial++;
+            mLayouts.remove(position);
+        }
+        super.notifyItemChanged(position);
+    }
+
+    @Override
+    public void notifyItemRangeChanged(int positionStart, int itemCount) {
+        // Stops work that may have read the old text
+        synchronized (mLayouts) {
+            mRangeSerial++;
+            for (int i = positionStart; i < positionStart + itemCount; i++) {
+                mLayouts.remove(i);
+            }
+        }
+        super.notifyItemRangeChanged(positionStart, itemCount);
+    }
+
+    @Override
+    public void notifyItemRangeInserted(int positionStart, int itemCount) {
+        // The layouts are cached by position, which moved
+        dropLayouts();
+        super.notifyItemRangeInserted(positionStart, itemCount);
+    }
+
+    @Override
+    public void notifyItemRangeRemoved(int positionStart, int itemCount) {
+        dropLayouts();
+        super.notifyItemRangeRemoved(positionStart, itemCount);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.view.View;
+
+/**
+ * A cell that draws a text {@link Layout} built ahead of time, e.g. by a
+ * {@link TextGridAdapter} on a background thread. A layout that fits the
+ * width of the cell is drawn as it is, so binding the cell measures and
+ * breaks no text on the UI thread. Without one, the cell builds its layout
+ * from {@link #setText(CharSequence)} when it is measured, as a TextView
+ * would.
+ * <p>
+ * The text is drawn with {@link #getPaint()}, aligned horizontally as set
+ * with {@link #setAlignment(Layout.Alignment)} and optionally centered
+ * vertically.
+ */
+public class TextLayoutView extends View {
+
+    private final TextPaint mPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private Layout.Alignment mAlignment = Layout.Alignment.ALIGN_NORMAL;
+    private boolean mCenterVertical;
+
+    private CharSequence mText = "";
+    private Layout mLayout;
+
+    public TextLayoutView(Context context) {
+        super(context);
+        mPaint.density = getResources().getDisplayMetrics().density;
+    }
+
+    /**
+     * @return the paint the text is drawn with; call
+     *         {@link #setText(CharSequence)} after changing it
+     */
+    public TextPaint getPaint() {
+        return mPaint;
+    }
+
+    /**
+     * Sets the text, whose layout is built when the cell is measured.
+     */
+    public void setText(CharSequence text) {
+        mText = text != null ? text : "";
+        mLayout = null;
+        requestLayout();
+        invalidate();
+    }
+
+    public CharSequence getText() {
+        return mText;
+    }
+
+    /**
+     * Sets the text with a layout built ahead of time. The layout is used as
+     * it is if it was built for the width the cell has for its text.
+     */
+    public void setTextLayout(Layout layout) {
+        if (layout == mLayout) {
+            return;
+        }
+        final Layout oldLayout = mLayout;
+        mText = layout.getText();
+        mLayout = layout;
+        if (oldLayout == null || oldLayout.getWidth() != layout.getWidth()
+                || oldLayout.getHeight() != layout.getHeight()) {
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    /**
+     * @return the layout of the text, or null before the cell is measured
+     */
+    public Layout getTextLayout() {
+        return mLayout;
+    }
+
+    public void setAlignment(Layout.Alignment alignment) {
+        if (mAlignment != alignment) {
+            mAlignment = alignment;
+            mLayout = null;
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    public Layout.Alignment getAlignment() {
+        return mAlignment;
+    }
+
+    /**
+     * Sets whether the text is centered vertically in the cell rather than
+     * drawn at its top.
+     */
+    public void setCenterVertical(boolean centerVertical) {
+        if (mCenterVertical != centerVertical) {
+            mCenterVertical = centerVertical;
+            invalidate();
+        }
+    }
+
+    /**
+     * Builds the layout a cell would build for the text, e.g. on a
+     * background thread with a copy of the cell's paint.
+     */
+    public static StaticLayout makeLayout(CharSequence text, TextPaint paint, int width,
+            Layout.Alignment alignment) {
+        return new StaticLayout(text, paint, Math.max(0, width), alignment, 1f, 0f, true);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final int horizontalPadding = getPaddingLeft() + getPaddingRight();
+        final int width;
+        if (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.EXACTLY) {
+            width = MeasureSpec.getSize(widthMeasureSpec);
+        } else {
+            width = resolveSize((int) Math.ceil(Layout.getDesiredWidth(mText, mPaint))
+                    + horizontalPadding, widthMeasureSpec);
+        }
+        final int textWidth = Math.max(0, width - horizontalPadding);
+        if (mLayout == null || mLayout.getWidth() != textWidth) {
+            mLayout = makeLayout(mText, mPaint, textWidth, mAlignment);
+        }
+        setMeasuredDimension(width, resolveSize(
+                mLayout.getHeight() + getPaddingTop() + getPaddingBottom(), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        final Layout layout = mLayout;
+        if (layout == null) {
+            return;
+        }
+        int top = getPaddingTop();
+        if (mCenterVertical) {
+            final int textHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+            top += (textHeight - layout.getHeight()) / 2;
+        }
+        final int saveCount = canvas.save();
+        canvas.translate(getPaddingLeft(), top);
+        layout.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gv.app;
+
+import android.database.Cursor;
+import android.database.DataSetObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+import android.util.SparseBooleanArray;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * A {@link BaseGridAdapter} over a large table, read a window of rows at a
+ * time on a background executor.
+ * <p>
+ * Each window is a cursor returned by {@link #queryWindow(int, int)}, whose
+ * rows are read into memory before the cursor is handed to the UI thread.
+ * Binding a cell then never touches the disk: a cell whose window is not
+ * loaded yet is bound with a null cursor, and bound again once the window is
+ * in. The grid reports the visible items through
+ * {@link GridVisibleRangeListener}, with the header rows and placeholders
+ * already left out, and the adapter keeps the windows around them loaded
+ * plus the next one in the scroll direction. At most <code>maxWindows</code>
+ * windows are kept, the least recently used ones are closed.
+ * <p>
+ * If the rows cannot be counted, the adapter stays empty and counts them
+ * again when the next observer registers or on {@link #refresh()}. A window
+ * that cannot be read, because the query failed or returned null, is not
+ * kept. Its cells stay bound with a null cursor, and the window is
+ * queried again the next time one of its rows is needed.
+ */
+public abstract class WindowedCursorGridAdapter extends BaseGridAdapter
+        implements GridVisibleRangeListener {
+
+    private static final String TAG = "WindowedCursorGridAdapter";
+
+    private static Executor sDefaultExecutor;
+
+    private final int mWindowSize;
+    private final LruCache<Integer, Cursor> mWindows;
+    private final Executor mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final SparseBooleanArray mLoadingWindows = new SparseBooleanArray();
+
+    private int mCount;
+    private boolean mCountRequested;
+    private int mLastVisibleFirst = -1;
+    // Windows loaded before the last refresh() are dropped
+    private int mGeneration;
+
+    /**
+     * Reads the windows on an executor shared by all windowed adapters.
+     *
+     * @param windowSize the number of rows in a window
+     * @param maxWindows the most windows to keep open, at least 3: the two
+     *        the visible items may span and the next one
+     */
+    public WindowedCursorGridAdapter(int windowSize, int maxWindows) {
+        this(windowSize, maxWindows, getDefaultExecutor());
+    }
+
+    /**
+     * @param windowSize the number of rows in a window
+     * @param maxWindows the most windows to keep open, at least 3: the two
+     *        the visible items may span and the next one
+     * @param executor the executor to read the windows on
+     */
+    public WindowedCursorGridAdapter(int windowSize, int maxWindows, Executor executor) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be 1 or more");
+        }
+        if (maxWindows < 3) {
+            throw new IllegalArgumentException("At least 3 windows are needed");
+        }
+        mWindowSize = windowSize;
+        mExecutor = executor;
+        mWindows = new LruCache<Integer, Cursor>(maxWindows) {
+            @Override
+            protected void entryRemoved(boolean evicted, Integer key, Cursor oldValue,
+                    Cursor newValue) {
+                oldValue.close();
+            }
+        };
+    }
+
+    private static synchronized Executor getDefaultExecutor() {
+        if (sDefaultExecutor == null) {
+            sDefaultExecutor = Executors.newSingleThreadExecutor();
+        }
+        return sDefaultExecutor;
+    }
+
+    /**
+     * Counts the rows. Called on the executor.
+     */
+    protected abstract int queryCount();
+
+    /**
+     * Queries a window of rows, e.g. with <code>LIMIT limit OFFSET
+     * offset</code>. Called on the executor.
+     *
+     * @return the rows from <code>offset</code> on, <code>limit</code> of
+     *         them unless the table ends before, or null if they cannot be
+     *         read right now
+     */
+    protected abstract Cursor queryWindow(int offset, int limit);
+
+    /**
+     * Makes a new cell, without binding it.
+     */
+    public abstract View newView(int position, ViewGroup parent);
+
+    /**
+     * Binds a cell to a row.
+     *
+     * @param cursor the cursor moved to the row, or null if the row is not
+     *        loaded yet, in which case the cell should show no data. The
+     *        cursor is closed when its window is dropped, so it must not be
+     *        kept past this call.
+     */
+    public abstract void bindView(View view, Cursor cursor);
+
+    @Override
+    public void registerDataSetObserver(DataSetObserver observer) {
+        super.registerDataSetObserver(observer);
+        if (!mCountRequested) {
+            requestCount();
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return the cursor moved to the row, or null if the row is not loaded
+     *         yet. The adapter closes the cursor when its window is dropped,
+     *         which may happen as soon as other windows are loaded, so the
+     *         cursor must be read right away and neither kept nor closed.
+     */
+    @Override
+    public Cursor getItem(int position) {
+        final int window = position / mWindowSize;
+        final Cursor cursor = mWindows.get(window);
+        if (cursor == null) {
+            requestWindow(window);
+            return null;
+        }
+        return cursor.moveToPosition(position % mWindowSize) ? cursor : null;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        final View view = convertView != null ? convertView : newView(position, parent);
+        bindView(view, getItem(position));
+        return view;
+    }
+
+    @Override
+    public void onVisibleRangeChanged(int firstPosition, int lastPosition) {
+        if (firstPosition < 0) {
+            return;
+        }
+        final int firstWindow = firstPosition / mWindowSize;
+        final int lastWindow = lastPosition / mWindowSize;
+        for (int window = firstWindow; window <= lastWindow; window++) {
+            // Also keeps them the most recently used
+            if (mWindows.get(window) == null) {
+                requestWindow(window);
+            }
+        }
+        // The second buffer: the window the scroll heads to
+        final int nextWindow = firstPosition >= mLastVisibleFirst
+                ? lastWindow + 1 : firstWindow - 1;
+        mLastVisibleFirst = firstPosition;
+        if (nextWindow >= 0 && nextWindow * mWindowSize < mCount
+                && mWindows.get(nextWindow) == null) {
+            requestWindow(nextWindow);
+        }
+    }
+
+    /**
+     * Closes all the windows and reads the table again, e.g. after it
+     * changed.
+     */
+    public void refresh() {
+        mGeneration++;
+        mWindows.evictAll();
+        mLoadingWindows.clear();
+        requestCount();
+    }
+
+    private void requestCount() {
+        mCountRequested = true;
+        final int generation = mGeneration;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int count = -1;
+                try {
+                    count = queryCount();
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Cannot count the rows", e);
+                }
+                final int counted = count;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        if (counted < 0) {
+                            // Asked for again when the next observer registers
+                            mCountRequested = false;
+                            return;
+                        }
+                        mCount = counted;
+                        notifyDataSetChanged();
+                    }
+                });
+            }
+        });
+    }
+
+    private void requestWindow(final int window) {
+        if (mLoadingWindows.get(window)) {
+            return;
+        }
+        mLoadingWindows.put(window, true);
+        final int generation = mGeneration;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Cursor cursor = null;
+                try {
+                    cursor = queryWindow(window * mWindowSize, mWindowSize);
+                    if (cursor != null) {
+                        // Counting reads the rows into the cursor's memory
+                        cursor.getCount();
+                    }
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Cannot read the window at " + window * mWindowSize, e);
+                    if (cursor != null) {
+                        cursor.close();
+                        cursor = null;
+                    }
+                }
+                final Cursor loaded = cursor;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onWindowLoaded(generation, window, loaded);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @param cursor the rows of the window, or null if they could not be read
+     */
+    private void onWindowLoaded(int generation, int window, Cursor cursor) {
+        if (generation != mGeneration) {
+            if (cursor != null) {
+                cursor.close();
+            }
+            return;
+        }
+        // Lets the window be requested again, whether it was read or not
+        mLoadingWindows.delete(window);
+        if (cursor == null) {
+            return;
+        }
+        mWindows.put(window, cursor);
+        notifyItemRangeChanged(window * mWindowSize, cursor.getCount());
+    }
+}